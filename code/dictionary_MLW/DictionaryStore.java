@@ -0,0 +1,394 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+
+/**
+ * A large vocabulary in one file, built once from a word list and mapped
+ * into memory when it is used, instead of parsing harvard_sentences.txt
+ * into 72 HashSets every time.
+ *
+ * The words are lower case a-z, sorted, and packed one after the other in
+ * a byte arena; word i is the bytes from offset i to offset i + 1. Every
+ * word has a frequency and the first Harvard list (1..72) it is in, or
+ * NO_LIST, so "the first k dictionaries" stays a filter on the list. The
+ * ranking of the words (see getRanking()) is computed when the store is
+ * built and kept in the file, by length, so that WordIndex can index the
+ * words of one length when it is first asked for them. The file is:
+ *
+ *   int MAGIC, int number of words n, int size of the arena,
+ *   int length of the longest word L
+ *   int[n + 1] offsets of the words in the arena
+ *   byte[n]    lists
+ *   int[n]     frequencies
+ *   int[L + 2] starts in the ranking of the words of every length
+ *   int[n]     ranking: the indexes of the words by length, then rank
+ *   byte[]     arena
+ *
+ * all big-endian. Nothing is read until it is asked for; a lookup is a
+ * binary search on the mapped bytes. A loaded store can be shared between
+ * threads.
+ *
+ * To build data/dictionary/words.dict from the words of unix_words.txt
+ * and the Harvard lists:
+ *
+ *   java DictionaryStore ../../data/dictionary/unix_words.txt
+ */
+public class DictionaryStore {
+    public static final int MAGIC = 0x44494332; // "DIC2"
+    /** List of the words that are in none of the Harvard lists. */
+    public static final int NO_LIST = Byte.MAX_VALUE;
+    public static final String DEFAULT_FILE =
+            "../../data/dictionary/words.dict";
+
+    private static final int HEADER_SIZE = 16;
+
+    private MappedByteBuffer buffer;
+    private int size;
+    private int max_length;
+    private int offsets_at;
+    private int lists_at;
+    private int frequencies_at;
+    private int starts_at;
+    private int ranking_at;
+    private int arena_at;
+
+    private DictionaryStore(MappedByteBuffer buffer, File file)
+            throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a dictionary store (or one of an " +
+                    "older format, to build again): " + file);
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(4);
+        int arena_size = buffer.getInt(8);
+        this.max_length = buffer.getInt(12);
+        this.offsets_at = HEADER_SIZE;
+        this.lists_at = this.offsets_at + 4 * (this.size + 1);
+        this.frequencies_at = this.lists_at + this.size;
+        this.starts_at = this.frequencies_at + 4 * this.size;
+        this.ranking_at = this.starts_at + 4 * (this.max_length + 2);
+        this.arena_at = this.ranking_at + 4 * this.size;
+        if ((long) this.arena_at + arena_size != buffer.capacity()) {
+            throw new IOException("truncated dictionary store: " + file);
+        }
+    }
+
+    /**
+     * Maps a store into memory.
+     * @param file
+     * @return the store
+     * @throws IOException
+     */
+    public static DictionaryStore load(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        try {
+            // the mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new DictionaryStore(buffer, file);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return number of words
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private int offset(int i) {
+        return this.buffer.getInt(this.offsets_at + 4 * i);
+    }
+
+    /**
+     * @param i 0..size() - 1, in alphabetical order
+     * @return word i
+     */
+    public String getWord(int i) {
+        int from = this.offset(i);
+        char[] word = new char[this.offset(i + 1) - from];
+        for (int j = 0; j < word.length; j++) {
+            word[j] = (char) this.buffer.get(this.arena_at + from + j);
+        }
+        return new String(word);
+    }
+
+    /**
+     * @param i
+     * @return first Harvard list (1..72) of word i, NO_LIST if it is in
+     * none
+     */
+    public int getList(int i) {
+        return this.buffer.get(this.lists_at + i);
+    }
+
+    /**
+     * @param i
+     * @return frequency of word i in the word list the store is built from
+     */
+    public int getFrequency(int i) {
+        return this.buffer.getInt(this.frequencies_at + 4 * i);
+    }
+
+    /**
+     * @param word
+     * @return index of the word, -1 if it is not in the store
+     */
+    public int indexOf(String word) {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = this.compare(mid, word);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(String word) {
+        return this.indexOf(word) >= 0;
+    }
+
+    /**
+     * Compares word i with a word, without making a String of it.
+     */
+    private int compare(int i, String word) {
+        int from = this.offset(i);
+        int length = this.offset(i + 1) - from;
+        int n = Math.min(length, word.length());
+        for (int j = 0; j < n; j++) {
+            int c = (this.buffer.get(this.arena_at + from + j) & 0xff) -
+                    word.charAt(j);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - word.length();
+    }
+
+    /**
+     * @return length of the longest word
+     */
+    public int getMaxLength() {
+        return this.max_length;
+    }
+
+    /**
+     * @param length
+     * @return the indexes of the words of the length by list (NO_LIST
+     * last), the most frequent first within a list, then in alphabetical
+     * order: the order in which WordIndex and TriadTrie break ties
+     */
+    public int[] getRanking(int length) {
+        if (length < 1 || length > this.max_length) {
+            return new int[0];
+        }
+        int from = this.buffer.getInt(this.starts_at + 4 * length);
+        int to = this.buffer.getInt(this.starts_at + 4 * (length + 1));
+        int[] ranking = new int[to - from];
+        for (int r = 0; r < ranking.length; r++) {
+            ranking[r] = this.buffer.getInt(this.ranking_at + 4 * (from + r));
+        }
+        return ranking;
+    }
+
+    /**
+     * @return the indexes of all the words, by length, then in the order
+     * of getRanking(length)
+     */
+    public int[] getRanking() {
+        int[] ranking = new int[this.size];
+        for (int r = 0; r < ranking.length; r++) {
+            ranking[r] = this.buffer.getInt(this.ranking_at + 4 * r);
+        }
+        return ranking;
+    }
+
+    /**
+     * Builds a store from a word list and the Harvard lists.
+     *
+     * A line of the word list is either "word frequency", or any number of
+     * words that count once each (so running text works too). The words
+     * are lower-cased; the ones with other characters than a-z are left
+     * out. The words of the Harvard lists are all in the store, with a
+     * frequency of 0 if the word list does not have them.
+     * @param dictionary the Harvard lists
+     * @param word_list
+     * @param out
+     * @return number of words written
+     * @throws IOException
+     */
+    public static int build(Dictionary dictionary, File word_list, File out)
+            throws IOException {
+        HashMap<String, Integer> frequencies = new HashMap<String, Integer>();
+        BufferedReader br = new BufferedReader(new FileReader(word_list));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length == 2 && tokens[1].matches("[0-9]+")) {
+                    count(frequencies, tokens[0],
+                            Integer.parseInt(tokens[1]));
+                    continue;
+                }
+                for (String token : tokens) {
+                    count(frequencies, token, 1);
+                }
+            }
+        } finally {
+            br.close();
+        }
+        HashMap<String, Integer> lists = new HashMap<String, Integer>();
+        for (int k = 1; k <= Dictionary.NUM_DICT; k++) {
+            for (String word : dictionary.getDictionary(k)) {
+                if (isWord(word) && !lists.containsKey(word)) {
+                    lists.put(word, k);
+                    count(frequencies, word, 0);
+                }
+            }
+        }
+        final ArrayList<String> words =
+                new ArrayList<String>(frequencies.keySet());
+        Collections.sort(words);
+        int max_length = 0;
+        for (String word : words) {
+            max_length = Math.max(max_length, word.length());
+        }
+        // the ranking, once, at build time
+        final byte[] word_lists = new byte[words.size()];
+        final int[] word_frequencies = new int[words.size()];
+        Integer[] ranking = new Integer[words.size()];
+        for (int i = 0; i < ranking.length; i++) {
+            Integer list = lists.get(words.get(i));
+            word_lists[i] = (byte) (list == null ? NO_LIST : list);
+            word_frequencies[i] = frequencies.get(words.get(i));
+            ranking[i] = i;
+        }
+        Arrays.sort(ranking, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int la = words.get(a).length();
+                int lb = words.get(b).length();
+                if (la != lb) {
+                    return la - lb;
+                }
+                if (word_lists[a] != word_lists[b]) {
+                    return word_lists[a] - word_lists[b];
+                }
+                if (word_frequencies[a] != word_frequencies[b]) {
+                    return word_frequencies[a] > word_frequencies[b] ? -1 : 1;
+                }
+                return a - b;
+            }
+        });
+        int[] starts = new int[max_length + 2];
+        for (String word : words) {
+            starts[word.length() + 1]++;
+        }
+        for (int l = 1; l < starts.length; l++) {
+            starts[l] += starts[l - 1];
+        }
+
+        DataOutputStream dos = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(out)));
+        try {
+            int arena_size = 0;
+            for (String word : words) {
+                arena_size += word.length();
+            }
+            dos.writeInt(MAGIC);
+            dos.writeInt(words.size());
+            dos.writeInt(arena_size);
+            dos.writeInt(max_length);
+            int offset = 0;
+            for (String word : words) {
+                dos.writeInt(offset);
+                offset += word.length();
+            }
+            dos.writeInt(offset);
+            for (byte list : word_lists) {
+                dos.writeByte(list);
+            }
+            for (int frequency : word_frequencies) {
+                dos.writeInt(frequency);
+            }
+            for (int start : starts) {
+                dos.writeInt(start);
+            }
+            for (int i : ranking) {
+                dos.writeInt(i);
+            }
+            for (String word : words) {
+                dos.writeBytes(word);
+            }
+        } finally {
+            dos.close();
+        }
+        return words.size();
+    }
+
+    private static void count(HashMap<String, Integer> frequencies,
+            String word, int n) {
+        word = word.toLowerCase();
+        if (!isWord(word)) {
+            return;
+        }
+        Integer frequency = frequencies.get(word);
+        long sum = (long) n + (frequency == null ? 0 : frequency);
+        frequencies.put(word, (int) Math.min(sum, Integer.MAX_VALUE));
+    }
+
+    private static boolean isWord(String word) {
+        if (word.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param args word list, and optionally the store to write (by default
+     * data/dictionary/words.dict)
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: DictionaryStore <word-list> " +
+                    "[<store>]");
+            System.out.println("Example: DictionaryStore " +
+                    "../../data/dictionary/unix_words.txt");
+            return;
+        }
+        File out = new File(args.length > 1 ? args[1] : DEFAULT_FILE);
+        int n = build(new Dictionary(), new File(args[0]), out);
+        System.out.println(n + " words written to " + out + " (" +
+                out.length() + " bytes)");
+    }
+}
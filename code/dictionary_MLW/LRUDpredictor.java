@@ -7,10 +7,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Comparator;
-import java.util.PriorityQueue;
 
 
 public class LRUDpredictor {
@@ -31,6 +28,10 @@ public class LRUDpredictor {
     Character[] right_down_set = new Character[] {'h','j','k','l','n','m'};
     
     Dictionary dictionary;
+    // the codes of the words of the dictionaries, built once
+    WordIndex index;
+    // words beyond the Harvard lists, see DictionaryStore
+    private static final String store_file = DictionaryStore.DEFAULT_FILE;
     
     public LRUDpredictor() {
 	// TODO Auto-generated constructor stub
@@ -39,72 +40,68 @@ public class LRUDpredictor {
 	RightUp = new HashSet<Character>(Arrays.asList(right_up_set));
 	RightDown = new HashSet<Character>(Arrays.asList(right_down_set));
 	
+	// the store, when it is built, replaces the Harvard lists; the words
+	// tied in distance then come in the order of its ranking
+	File store = new File(store_file);
+	if (store.exists()) {
+	    try {
+		DictionaryStore words = DictionaryStore.load(store);
+		index = new WordIndex(words);
+		System.out.println("using the " + words.size() +
+			" words of " + store_file);
+		return;
+	    } catch (IOException e) {
+		System.out.println("cannot load " + store_file + ": " +
+			e.getMessage());
+	    }
+	}
 	dictionary = new Dictionary();
+	index = new WordIndex(dictionary);
+	System.out.println("using the words of the " + Dictionary.NUM_DICT +
+		" Harvard lists");
+    }
+    
+    /*
+     * the lists of dict_num dictionaries: 1..dict_num, or all of them
+     * (and the words of the store in no list) for 0
+     */
+    private static int maxList(int dict_num) {
+	return dict_num == 0 ? DictionaryStore.NO_LIST : dict_num;
     }
     
     /**
      * return all the matching words, that match according to the LRUD sequence
      * @sequence: input sequence, i.e. "lrud"
-     * @dict_num: which dictionaries, between 1 ~ 72
+     * @dict_num: which dictionaries, between 1 ~ 72, 0 for all the words
      * @return: all words in 1-dict_num dictionaries with the same LRUD sequence 
      */
     private ArrayList<String> getMatchingWords(String sequence, int dict_num) {
-	if (dict_num < 1 || dict_num > 72)
+	if (dict_num < 0 || dict_num > 72)
 	    throw new RuntimeException("Dictionary number is out of range!");
 	if (!isValid(sequence))
 	    throw new RuntimeException("invalid input sequence!");
 	
-	ArrayList<String> result = new ArrayList<String>();
-	HashSet<String> dict = this.dictionary.getKDictionaries(dict_num);
-	for (String entry : dict) {
-	    String entry_seq = generateSequence(entry);
-	    if (get_distance(sequence, entry_seq) == 0)
-		result.add(entry);
-	}
-	return result;
+	return this.index.getMatchingWords(WordIndex.lrudQuery(sequence),
+		maxList(dict_num));
     }
     
     /**
      * returns the top k closest words in the dictionary specified by dict_num
      * as measured by the distance of their LRUD sequences
      * @param input sequence: same as in getMatchingWords
-     * @dict_num: which dictionaries, between 1 ~ 72
+     * @dict_num: which dictionaries, between 1 ~ 72, 0 for all the words
      * @param k: how many words we want to return, is upper bound
      * @return: top k closest words measured by LRUD sequence distance
      * in the 1-dict_num dictionaries 
      */
     private ArrayList<String> getClosestWords(String sequence, int dict_num, int k) {
-	if (dict_num < 1 || dict_num > 72)
+	if (dict_num < 0 || dict_num > 72)
 	    throw new RuntimeException("dict_num is out of range!");
 	if (!isValid(sequence))
 	    throw new RuntimeException("invalid input sequence!");	
 	
-	HashSet<String> dict = this.dictionary.getKDictionaries(dict_num);
-	PriorityQueue<Pair> que = new PriorityQueue<Pair>(k, new Comparator<Pair>(){
-	    @Override
-	    public int compare(Pair p1, Pair p2) {
-	        return (int)Math.signum(p2.getDistance() - p1.getDistance());
-	    }
-	});
-	int distance = 0;
-	for (String entry : dict) {
-	    String entry_seq = generateSequence(entry);
-	    distance = get_distance(sequence, entry_seq);
-	    if (distance == Integer.MAX_VALUE) {
-	        continue;
-	    }
-	    que.offer(new Pair(entry, distance));
-        if (que.size() == (k + 1)) {
-            que.poll();
-        }
-	}
-	
-	String[] arr = new String[que.size()];
-	for (int i = que.size() - 1; i >= 0; i--) {
-	    arr[i] = que.poll().getWord();
-	}
-	ArrayList<String> result = new ArrayList<String>(Arrays.asList(arr));
-	return result;
+	return this.index.getClosestWords(WordIndex.lrudQuery(sequence),
+		maxList(dict_num), k);
     }
     
     /**
@@ -114,68 +111,23 @@ public class LRUDpredictor {
      * 
      * In case of tie, all the tied words are returned.
      * @param input sequence: same as in getMatchingWords
-     * @dict_num: which dictionaries, between 1 ~ 72
+     * @dict_num: which dictionaries, between 1 ~ 72, 0 for all the words
      * @param k: how many words we want to return, is upper bound
      * @return: top k closest words measured by LRUD sequence distance
      * in the 1-dict_num dictionaries 
      */
     private ArrayList<String> getClosestDistanceWords(String sequence,
             int dict_num, int k) {
-    if (dict_num < 1 || dict_num > 72)
+    if (dict_num < 0 || dict_num > 72)
         throw new RuntimeException("dict_num is out of range!");
     if (!isValid(sequence))
         throw new RuntimeException("invalid input sequence!");  
     
-    HashSet<String> dict = this.dictionary.getKDictionaries(dict_num);
-    HashMap<Integer, ArrayList<String>> list =
-            new HashMap<Integer, ArrayList<String>>(); 
-    
-    int distance = 0;
-    for (String entry : dict) {
-        String entry_seq = generateSequence(entry);
-        distance = get_distance(sequence, entry_seq);
-        if (distance == Integer.MAX_VALUE) {
-            continue;
-        }
-        ArrayList<String> word_list = null;
-        if (list.containsKey(distance)) {
-            word_list = list.get(distance);
-        } else {
-            word_list = new ArrayList<String>();
-            list.put(distance, word_list);
-        }
-        word_list.add(entry);
-    }
-    
-    ArrayList<String> result = new ArrayList<String>();
-    for (int i = 1; i <= k; i++) {
-        if (!list.containsKey(i)) {
-            continue;
-        }
-        result.addAll(list.get(i));
-    }
-    return result;
+    return this.index.getWordsWithin(WordIndex.lrudQuery(sequence),
+            maxList(dict_num), 1, k);
     }
 
     
-    class Pair {
-        String word;
-        int distance;
-        
-        Pair(String word, int distance) {
-            this.word = word;
-            this.distance = distance;
-        }
-        
-        String getWord() {
-            return this.word;
-        }
-        
-        int getDistance() {
-            return this.distance;
-        }
-    }
-    
     /*
      * check if sequence is valid. Returns
      */
@@ -211,17 +163,11 @@ public class LRUDpredictor {
 	return sb.toString();
     }
 
-    private static int get_distance(String x, String y) {
-	if (x.length() != y.length())
-	    return Integer.MAX_VALUE;
-	if (x.equals(y))
-	    return 0;	
-	int dist = 0;
-	for (int i = 0; i < x.length(); ++i) {
-	    if (x.charAt(i) != y.charAt(i))
-		dist++;
-	}
-	return dist;
+    /*
+     * distance of the word from the LRUD sequence, from the packed codes
+     */
+    private static int get_distance(String sequence, String word) {
+	return WordIndex.distance(WordIndex.lrudQuery(sequence), word);
     }
     
     /*
@@ -263,7 +209,7 @@ public class LRUDpredictor {
         if (args.length < 3) {
             System.out.println("Usage: LRUDpredictor <filename> <num-dicts-to-search> <num-matches>\n" +
                     "Pass in the filename of the sequence file, number of dictionaries" +
-                    "to search for the word in and top-K matches");
+                    "to search for the word in (0 for all the words) and top-K matches");
             System.out.println("Example: LRUDpredictor ../../data/input-words.arff/akshay.arff 3 5");
             return;
         }
@@ -288,7 +234,7 @@ public class LRUDpredictor {
     	
     	System.out.println("Found "+result2.size()+" close match(es):");
     	for (String s : result2) {
-    	    int dist = get_distance(seq, pred.generateSequence(s));
+    	    int dist = get_distance(seq, s);
     	    System.out.println(s+" "+dist);
     	}
 	}
@@ -308,7 +254,7 @@ public class LRUDpredictor {
         
         // close matches to file
         for (String s : result2) {
-            int dist = get_distance(seq, pred.generateSequence(s));
+            int dist = get_distance(seq, s);
             pw.println(s + " " + dist);
         }
         pw.close();
@@ -1,80 +1,248 @@
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Hashtable;
+import java.util.Comparator;
+import java.util.HashMap;
 
 
 /*
- * Used to get the top k results that match a given triad sequence 
+ * Used to get the top k results that match a given triad sequence
+ *
+ * Keeps the k words of smallest distance in a heap with the worst of them
+ * on top, so an insert costs O(log k) however many candidates there are.
+ * A word inserted again keeps its smallest distance (decrease-key). As in
+ * LRUDpredictor.getClosestDistanceWords, words tied with the k-th distance
+ * are all kept, so there can be more than k suggestions.
+ *
+ * A table is not synchronized: give every search thread its own table and
+ * merge() them at the end.
  */
-
 public class ResultTable {
-    
-    private Hashtable<String, Integer> table;
-    
-    private class Entry implements Comparable<Entry> {
-	private int distance;
+
+    private static final int IN_TIES = -1;
+
+    private class Entry {
 	private String word;
-	
-	public Entry(int distance, String word) {
-	    this.distance = distance;
+	private int distance;
+	// order of the insert of the distance (or given), to break ties
+	private long order;
+	// position in the heap, IN_TIES if tied with the top of the heap
+	private int index;
+
+	public Entry(String word, int distance, long order) {
 	    this.word = word;
+	    this.distance = distance;
+	    this.order = order;
 	}
-	
-	@Override
-	public int compareTo(Entry that) {
-	    return this.distance - that.distance;
-	}
-	
-	public String getWord() {
-	    return word;
-	}
-	public int getDistance() {
-	    return distance;
+
+	/*
+	 * true if this entry ranks after that one
+	 */
+	public boolean worseThan(Entry that) {
+	    if (this.distance != that.distance)
+		return this.distance > that.distance;
+	    return this.order > that.order;
 	}
     }
 
-    public ResultTable() {
-	// TODO Auto-generated constructor stub
-	table = new Hashtable<String, Integer>();
+    private int k;
+    private Entry[] heap;
+    private int size = 0;
+    // words out of the heap that are tied with the top of it; may hold
+    // entries that have left since (see isTie())
+    private ArrayList<Entry> ties = new ArrayList<Entry>();
+    private HashMap<String, Entry> entries = new HashMap<String, Entry>();
+    private long num_inserts = 0;
+
+    /**
+     * @param k number of suggestions to keep, not counting ties
+     */
+    public ResultTable(int k) {
+	if (k < 1)
+	    throw new IllegalArgumentException("k must be at least 1: " + k);
+	this.k = k;
+	this.heap = new Entry[k];
     }
-    
+
     /*
      * insert a new potential word into ResultTable
      * insert new word or
      * overwrite existing word if distance is shorter
      */
     public void insert(String word, int distance) {
-	if (!table.containsKey(word))
-	    table.put(word, distance);
-	else if (table.containsKey(word) && (distance < table.get(word)))
-	    table.put(word, distance);
+	this.insert(word, distance, this.num_inserts++);
+    }
+
+    /**
+     * @param word
+     * @param distance
+     * @param order rank of the word among the words of its distance,
+     * smallest first, instead of the order of insertion; a word inserted
+     * twice with the same distance keeps the smaller order
+     */
+    public void insert(String word, int distance, long order) {
+	Entry entry = this.entries.get(word);
+	if (entry != null) {
+	    if (distance > entry.distance ||
+		    (distance == entry.distance && order >= entry.order))
+		return;
+	    if (entry.index != IN_TIES) {
+		// decrease-key: a better entry moves away from the top
+		entry.distance = distance;
+		entry.order = order;
+		this.siftDown(entry.index);
+		this.dropTies();
+		return;
+	    }
+	    if (distance == entry.distance) {
+		// still tied
+		entry.order = order;
+		return;
+	    }
+	    // was tied with the top; it now goes in the heap
+	    this.entries.remove(word);
+	    entry.index = Integer.MIN_VALUE;
+	}
+	entry = new Entry(word, distance, order);
+	if (this.size < this.k) {
+	    this.entries.put(word, entry);
+	    this.heap[this.size] = entry;
+	    entry.index = this.size;
+	    this.siftUp(this.size++);
+	    return;
+	}
+	Entry top = this.heap[0];
+	if (distance > top.distance)
+	    return;
+	this.entries.put(word, entry);
+	if (distance == top.distance) {
+	    entry.index = IN_TIES;
+	    this.ties.add(entry);
+	    return;
+	}
+	// the new entry takes the place of the worst one, which stays as a
+	// tie if the new top has its distance
+	this.heap[0] = entry;
+	entry.index = 0;
+	this.siftDown(0);
+	top.index = IN_TIES;
+	this.ties.add(top);
+	this.dropTies();
     }
 
     /*
-     * returns the top k suggestions with closest distance
+     * forget the ties that are no longer tied with the top of the heap
      */
-    public ArrayList<String> getTopKSuggestions(int k) {
-	System.out.println("table size: "+table.size());
-	Entry[] a = new Entry[table.size()];
-	int i = 0;
-	for (String key : table.keySet()) {
-	    a[i++] = new Entry(table.get(key), key);
+    private void dropTies() {
+	if (this.ties.isEmpty() || this.size < this.k)
+	    return;
+	int distance = this.heap[0].distance;
+	int kept = 0;
+	for (Entry entry : this.ties) {
+	    if (!this.isTie(entry))
+		continue;
+	    if (entry.distance == distance)
+		this.ties.set(kept++, entry);
+	    else
+		this.entries.remove(entry.word);
+	}
+	this.ties.subList(kept, this.ties.size()).clear();
+    }
+
+    private boolean isTie(Entry entry) {
+	return entry.index == IN_TIES &&
+		this.entries.get(entry.word) == entry;
+    }
+
+    private void siftUp(int i) {
+	Entry entry = this.heap[i];
+	while (i > 0) {
+	    int parent = (i - 1) / 2;
+	    if (!entry.worseThan(this.heap[parent]))
+		break;
+	    this.place(this.heap[parent], i);
+	    i = parent;
 	}
-	Arrays.sort(a);
-	ArrayList<String> result = new ArrayList<String>(k);
-	for (i = 0; i < Math.min(k, table.size()); ++i) {
-	    result.add(a[i].getWord());
-	    System.out.println("adding "+a[i].getWord() + " " + a[i].getDistance());
+	this.place(entry, i);
+    }
+
+    private void siftDown(int i) {
+	Entry entry = this.heap[i];
+	while (true) {
+	    int child = 2 * i + 1;
+	    if (child >= this.size)
+		break;
+	    if (child + 1 < this.size &&
+		    this.heap[child + 1].worseThan(this.heap[child]))
+		child++;
+	    if (!this.heap[child].worseThan(entry))
+		break;
+	    this.place(this.heap[child], i);
+	    i = child;
 	}
-	return result;
+	this.place(entry, i);
+    }
+
+    private void place(Entry entry, int i) {
+	this.heap[i] = entry;
+	entry.index = i;
+    }
+
+    /**
+     * @return the distance a word needs to make it into the table: words
+     * further than this are dropped; Integer.MAX_VALUE until the table
+     * holds k words
+     */
+    public int getWorstDistance() {
+	return this.size < this.k ? Integer.MAX_VALUE : this.heap[0].distance;
     }
-    
+
+    /**
+     * @param word
+     * @return distance of the word, -1 if it is not in the table
+     */
+    public int getDistance(String word) {
+	Entry entry = this.entries.get(word);
+	return entry == null ? -1 : entry.distance;
+    }
+
     /**
-     * @param args
+     * Adds the suggestions of another table, e.g. of another thread. The
+     * words keep their order from insert() of the other table.
+     * @param that
      */
-    public static void main(String[] args) {
-	// TODO Auto-generated method stub
+    public void merge(ResultTable that) {
+	for (Entry entry : that.getEntries())
+	    this.insert(entry.word, entry.distance, entry.order);
+    }
 
+    private Entry[] getEntries() {
+	ArrayList<Entry> list =
+		new ArrayList<Entry>(this.size + this.ties.size());
+	for (int i = 0; i < this.size; ++i)
+	    list.add(this.heap[i]);
+	for (Entry entry : this.ties) {
+	    if (this.isTie(entry))
+		list.add(entry);
+	}
+	Entry[] a = list.toArray(new Entry[list.size()]);
+	Arrays.sort(a, new Comparator<Entry>() {
+	    @Override
+	    public int compare(Entry x, Entry y) {
+		return x.worseThan(y) ? 1 : (y.worseThan(x) ? -1 : 0);
+	    }
+	});
+	return a;
+    }
+
+    /*
+     * returns the top k suggestions with closest distance, and all the
+     * words tied with the k-th
+     */
+    public ArrayList<String> getTopKSuggestions() {
+	ArrayList<String> result = new ArrayList<String>(this.size);
+	for (Entry entry : this.getEntries())
+	    result.add(entry.word);
+	return result;
     }
 
 }
@@ -0,0 +1,288 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+
+/**
+ * Trie of the words of the dictionaries, to decode a triad sequence
+ * without making the 3^n letter strings of it.
+ *
+ * decode() walks the trie one letter per triad and follows only the
+ * letters of the triad, or, while the mismatch budget lasts, any other
+ * letter at the cost of a mismatch. Every node knows the lengths of the
+ * words below it and the first dictionary (1..72) any of them is in, so
+ * the walk leaves the branches that cannot end in a word of the length of
+ * the sequence, or of the first max_list dictionaries. The work is about
+ * the prefixes that fit the triads, not 3^n times the size of the
+ * dictionary.
+ *
+ * The mismatches of a word are the number of its letters that are not in
+ * the triad of their position: the distance of WordIndex.TRIAD, and the
+ * smallest number of letters the word differs in from any of the
+ * combinations of the triads.
+ */
+public class TriadTrie {
+    // nodes: letter, first child, next sibling (-1 for none), word that
+    // ends at the node (-1 for none)
+    private char[] letters = new char[64];
+    private int[] children = new int[64];
+    private int[] siblings = new int[64];
+    private int[] ends = new int[64];
+    // bit l is set if a word of length l ends at or below the node
+    private long[] lengths = new long[64];
+    // first dictionary of any word at or below the node
+    private byte[] min_lists = new byte[64];
+    private int num_nodes = 0;
+
+    private ArrayList<String> words = new ArrayList<String>();
+    private ArrayList<Byte> lists = new ArrayList<Byte>();
+
+    /**
+     * Adds the words of all the dictionaries. A word is kept with the
+     * first dictionary it is in; within a dictionary the words are in
+     * alphabetical order, as in WordIndex.
+     * @param dictionary
+     */
+    public TriadTrie(Dictionary dictionary) {
+        this.newNode('\0');
+        HashSet<String> seen = new HashSet<String>();
+        for (int k = 1; k <= Dictionary.NUM_DICT; k++) {
+            ArrayList<String> words =
+                    new ArrayList<String>(dictionary.getDictionary(k));
+            Collections.sort(words);
+            for (String word : words) {
+                if (seen.add(word)) {
+                    this.add(word, k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the words of a store, with their lists, in the order of
+     * DictionaryStore.getRanking().
+     * @param store
+     */
+    public TriadTrie(DictionaryStore store) {
+        this.newNode('\0');
+        for (int i : store.getRanking()) {
+            this.add(store.getWord(i), store.getList(i));
+        }
+    }
+
+    /**
+     * Adds the words of a word list, all of them as dictionary list.
+     * @param words
+     * @param list
+     */
+    public TriadTrie(Iterable<String> words, int list) {
+        this.newNode('\0');
+        for (String word : words) {
+            this.add(word, list);
+        }
+    }
+
+    private int newNode(char letter) {
+        if (this.num_nodes == this.letters.length) {
+            int n = 2 * this.num_nodes;
+            this.letters = Arrays.copyOf(this.letters, n);
+            this.children = Arrays.copyOf(this.children, n);
+            this.siblings = Arrays.copyOf(this.siblings, n);
+            this.ends = Arrays.copyOf(this.ends, n);
+            this.lengths = Arrays.copyOf(this.lengths, n);
+            this.min_lists = Arrays.copyOf(this.min_lists, n);
+        }
+        int node = this.num_nodes++;
+        this.letters[node] = letter;
+        this.children[node] = -1;
+        this.siblings[node] = -1;
+        this.ends[node] = -1;
+        this.min_lists[node] = Byte.MAX_VALUE;
+        return node;
+    }
+
+    private void add(String word, int list) {
+        if (word.length() == 0 || word.length() > 63) {
+            return;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                // no triad; cannot be typed on the letters
+                return;
+            }
+        }
+        long length = 1L << word.length();
+        int node = 0;
+        this.mark(node, length, list);
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            int child = this.children[node];
+            int last = -1;
+            while (child >= 0 && this.letters[child] != c) {
+                last = child;
+                child = this.siblings[child];
+            }
+            if (child < 0) {
+                child = this.newNode(c);
+                if (last < 0) {
+                    this.children[node] = child;
+                } else {
+                    this.siblings[last] = child;
+                }
+            }
+            node = child;
+            this.mark(node, length, list);
+        }
+        if (this.ends[node] < 0) {
+            this.ends[node] = this.words.size();
+            this.words.add(word);
+            this.lists.add((byte) list);
+        }
+    }
+
+    private void mark(int node, long length, int list) {
+        this.lengths[node] |= length;
+        this.min_lists[node] = (byte) Math.min(this.min_lists[node], list);
+    }
+
+    /**
+     * @return number of words in the trie
+     */
+    public int size() {
+        return this.words.size();
+    }
+
+    /**
+     * @param triads triad (1..9) of every letter
+     * @param max_list only the words of dictionaries 1..max_list
+     * @param max_mismatches letters allowed outside their triad
+     * @return the words of the length of the triads with at most
+     * max_mismatches mismatches, fewest mismatches first, then in the
+     * order of the dictionaries
+     */
+    public ArrayList<String> decode(int[] triads, int max_list,
+            int max_mismatches) {
+        long[] found = this.walk(triads, max_list, max_mismatches, null);
+        Arrays.sort(found);
+        ArrayList<String> result = new ArrayList<String>(found.length);
+        for (long word : found) {
+            result.add(this.words.get((int) word));
+        }
+        return result;
+    }
+
+    /**
+     * Like decode(), but only the k words with the fewest mismatches, and
+     * the words tied with the k-th (see ResultTable). Once k words are
+     * found, the walk leaves the branches with more mismatches than the
+     * k-th word.
+     * @param triads triad (1..9) of every letter
+     * @param max_list only the words of dictionaries 1..max_list
+     * @param max_mismatches letters allowed outside their triad
+     * @param k
+     * @return the suggestions, fewest mismatches first, then in the order
+     * of the dictionaries
+     */
+    public ArrayList<String> decode(int[] triads, int max_list,
+            int max_mismatches, int k) {
+        ResultTable table = new ResultTable(k);
+        this.walk(triads, max_list, max_mismatches, table);
+        return table.getTopKSuggestions();
+    }
+
+    /**
+     * Walks the trie along the triads.
+     * @param triads
+     * @param max_list
+     * @param max_mismatches
+     * @param table table to insert the words into, null to return them
+     * @return the words found, as mismatches << 32 | word (none if there
+     * is a table)
+     */
+    private long[] walk(int[] triads, int max_list, int max_mismatches,
+            ResultTable table) {
+        int n = triads.length;
+        for (int i = 0; i < n; i++) {
+            if (triads[i] < 1 || triads[i] > 9) {
+                throw new IllegalArgumentException(
+                        "triad not between 1 and 9: " + triads[i]);
+            }
+        }
+        if (n == 0 || n > 63) {
+            return new long[0];
+        }
+        long length = 1L << n;
+        // depth-first, with the nodes still to visit on a stack; a node
+        // pushes at most its 26 children
+        int[] stack = new int[26 * n + 1];
+        int[] depths = new int[stack.length];
+        int[] mismatches = new int[stack.length];
+        int top = 0;
+        stack[0] = 0;
+        top++;
+        long[] found = new long[16];
+        int num_found = 0;
+        while (top > 0) {
+            top--;
+            int node = stack[top];
+            int depth = depths[top];
+            int m = mismatches[top];
+            int budget = max_mismatches;
+            if (table != null) {
+                budget = Math.min(budget, table.getWorstDistance());
+            }
+            if (m > budget) {
+                continue;
+            }
+            if (depth == n) {
+                int word = this.ends[node];
+                if (word < 0 || this.lists.get(word) > max_list) {
+                    continue;
+                }
+                if (table != null) {
+                    table.insert(this.words.get(word), m, word);
+                    continue;
+                }
+                if (num_found == found.length) {
+                    found = Arrays.copyOf(found, 2 * num_found);
+                }
+                found[num_found++] = (long) m << 32 | word;
+                continue;
+            }
+            int triad = triads[depth];
+            // the letters of the triad last, so they are visited first
+            for (int pass = 0; pass < 2; pass++) {
+                for (int child = this.children[node]; child >= 0;
+                        child = this.siblings[child]) {
+                    if ((this.lengths[child] & length) == 0 ||
+                            this.min_lists[child] > max_list) {
+                        continue;
+                    }
+                    char c = this.letters[child];
+                    boolean in_triad = WordIndex.TRIAD_OF[c - 'a'] == triad;
+                    if (in_triad != (pass == 1) ||
+                            (!in_triad && m + 1 > budget)) {
+                        continue;
+                    }
+                    stack[top] = child;
+                    depths[top] = depth + 1;
+                    mismatches[top] = in_triad ? m : m + 1;
+                    top++;
+                }
+            }
+        }
+        return Arrays.copyOf(found, num_found);
+    }
+
+    /**
+     * @param triads
+     * @param word
+     * @return number of letters of the word not in the triad of their
+     * position, Integer.MAX_VALUE if the lengths differ
+     */
+    public static int mismatches(int[] triads, String word) {
+        return WordIndex.distance(WordIndex.triadQuery(triads), word);
+    }
+}
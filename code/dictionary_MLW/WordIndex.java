@@ -0,0 +1,712 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+
+/**
+ * Index of the words of the dictionaries by their key codes, built once so
+ * that a query does not merge the dictionaries or re-encode every word.
+ *
+ * Every word is stored with four codes, packed into longs:
+ *
+ *   LRUD    2 bits per letter: left/right, then up/down
+ *   TRIAD   4 bits per letter: the triad (1..9) of the letter
+ *   LR      1 bit per letter: left/right
+ *   UD      1 bit per letter: up/down
+ *
+ * The words are bucketed by length, since only words of the same length
+ * can match. Within a bucket the codes of a scheme sit one after the other
+ * in a long[] (stride longs per word), with a hash table on them for the
+ * exact matches. The distance of a word from a query is the popcount of
+ * the XOR of their codes.
+ *
+ * The near matches of the schemes with one bit per position (LRUD, LR and
+ * UD) go through multi-index tables: the code is split into chunks of
+ * about log2(bucket size) bits, and each chunk lists the words by its
+ * value. A word within r of the query has a chunk within r / (number of
+ * chunks) of the one of the query, so only the words under those values
+ * are checked. A query with a wide radius, or with positions that cannot
+ * match, scans the codes of the bucket instead.
+ *
+ * The distance of two codes is the one of the sequences of LRUDpredictor
+ * and Dictionary: the number of positions (characters of "luld...", or
+ * triads) that differ. Every word keeps the number of the first dictionary
+ * (1..72) it appears in, so "the first k dictionaries" is a filter on that
+ * number instead of a new HashSet.
+ */
+public class WordIndex {
+    public static final int LRUD = 0;
+    public static final int TRIAD = 1;
+    public static final int LR = 2;
+    public static final int UD = 3;
+    private static final int NUM_SCHEMES = 4;
+    // bits of a letter, and of a position of the distance, in every scheme
+    private static final int[] LETTER_BITS = {2, 4, 1, 1};
+    private static final int[] POSITION_BITS = {1, 4, 1, 1};
+    // lowest bit of every nibble
+    private static final long NIBBLE_LOW = 0x1111111111111111L;
+    // widest chunk of the multi-index tables
+    private static final int MAX_CHUNK_BITS = 16;
+    // cost of checking a candidate, in words of a scan of the bucket
+    private static final double CANDIDATE_COST = 4;
+
+    // left/right and up/down of the letters, as in LRUDpredictor
+    private static final String RIGHT = "yuiophjklnm";
+    private static final String DOWN = "asdfgzxcvbhjklnm";
+    // triads 1..9 of the letters, as decoded by TriadTrie
+    private static final String[] TRIADS = {
+        "qaw", "zsx", "edr", "fcv", "tgy", "hbn", "uji", "olp", "km"
+    };
+    static final int[] TRIAD_OF = new int[26];
+    static {
+        for (int t = 0; t < TRIADS.length; t++) {
+            for (int i = 0; i < TRIADS[t].length(); i++) {
+                TRIAD_OF[TRIADS[t].charAt(i) - 'a'] = t + 1;
+            }
+        }
+    }
+
+    /**
+     * An encoded query. Positions that cannot match any word (e.g. a 'u'
+     * where the left/right of a letter is expected) are kept in a mask and
+     * always count as a difference.
+     */
+    public static class Query {
+        private int scheme;
+        private int length;
+        private long[] code;
+        private long[] bad;
+
+        private Query(int scheme, int length) {
+            this.scheme = scheme;
+            this.length = length;
+            int stride = stride(scheme, length);
+            this.code = new long[stride];
+            this.bad = new long[stride];
+        }
+
+        public int getScheme() {
+            return this.scheme;
+        }
+
+        /**
+         * @return number of letters
+         */
+        public int length() {
+            return this.length;
+        }
+
+        private void set(int bit, boolean one) {
+            if (one) {
+                this.code[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+
+        private void setBad(int bit, int bits) {
+            for (int b = bit; b < bit + bits; b++) {
+                this.bad[b >>> 6] |= 1L << (b & 63);
+            }
+        }
+
+        private boolean hasBad() {
+            for (long b : this.bad) {
+                if (b != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param sequence LRUD sequence, e.g. "luldru" (two characters per
+     * letter, as from LRUDpredictor.generateSequence)
+     * @return the query of the sequence
+     */
+    public static Query lrudQuery(String sequence) {
+        if (sequence.length() % 2 == 1) {
+            throw new IllegalArgumentException(
+                    "odd length LRUD sequence: " + sequence);
+        }
+        Query query = new Query(LRUD, sequence.length() / 2);
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            boolean lr_position = i % 2 == 0;
+            if (lr_position && (c == 'l' || c == 'r')) {
+                query.set(i, c == 'r');
+            } else if (!lr_position && (c == 'u' || c == 'd')) {
+                query.set(i, c == 'd');
+            } else {
+                query.setBad(i, 1);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * @param triads triad (1..9) of every letter
+     * @return the query of the triads
+     */
+    public static Query triadQuery(int[] triads) {
+        Query query = new Query(TRIAD, triads.length);
+        for (int i = 0; i < triads.length; i++) {
+            if (triads[i] < 1 || triads[i] > 9) {
+                throw new IllegalArgumentException(
+                        "triad not between 1 and 9: " + triads[i]);
+            }
+            for (int b = 0; b < 4; b++) {
+                query.set(4 * i + b, ((triads[i] >> b) & 1) != 0);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * @param sequence sequence of 'l' and 'r' (LR) or of 'u' and 'd' (UD),
+     * one character per letter
+     * @param scheme LR or UD
+     * @return the query of the sequence
+     */
+    public static Query halfQuery(String sequence, int scheme) {
+        if (scheme != LR && scheme != UD) {
+            throw new IllegalArgumentException("not LR or UD: " + scheme);
+        }
+        char zero = scheme == LR ? 'l' : 'u';
+        char one = scheme == LR ? 'r' : 'd';
+        Query query = new Query(scheme, sequence.length());
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            if (c == zero || c == one) {
+                query.set(i, c == one);
+            } else {
+                query.setBad(i, 1);
+            }
+        }
+        return query;
+    }
+
+    private static int stride(int scheme, int length) {
+        return Math.max(1, (length * LETTER_BITS[scheme] + 63) / 64);
+    }
+
+    /**
+     * The words of one length, and their codes.
+     */
+    private static class Bucket {
+        int length;
+        int size = 0;
+        String[] words = new String[16];
+        byte[] lists = new byte[16];
+        int[] strides = new int[NUM_SCHEMES];
+        long[][] codes = new long[NUM_SCHEMES][];
+        // hash tables of the codes: head[hash] is the first word + 1, and
+        // next[word] the next word + 1 with the same hash
+        int[][] heads = new int[NUM_SCHEMES][];
+        int[][] next = new int[NUM_SCHEMES][];
+        // multi-index tables of the schemes with one bit per position:
+        // chunk c is bits chunk_from[c] until chunk_from[c + 1] of the
+        // code, and chunk_words[c] lists the words by the value of the
+        // chunk, from chunk_starts[c][value] on
+        int[][] chunk_from = new int[NUM_SCHEMES][];
+        int[][][] chunk_starts = new int[NUM_SCHEMES][][];
+        int[][][] chunk_words = new int[NUM_SCHEMES][][];
+
+        Bucket(int length) {
+            this.length = length;
+            for (int s = 0; s < NUM_SCHEMES; s++) {
+                this.strides[s] = stride(s, length);
+            }
+        }
+
+        void add(String word, int list) {
+            if (this.size == this.words.length) {
+                this.words = Arrays.copyOf(this.words, 2 * this.size);
+                this.lists = Arrays.copyOf(this.lists, 2 * this.size);
+            }
+            this.words[this.size] = word;
+            this.lists[this.size] = (byte) list;
+            this.size++;
+        }
+
+        /**
+         * Encodes the words and builds the hash tables, once all the words
+         * are added.
+         */
+        void build() {
+            int table_size = Integer.highestOneBit(Math.max(this.size, 1)) * 4;
+            for (int s = 0; s < NUM_SCHEMES; s++) {
+                int stride = this.strides[s];
+                this.codes[s] = new long[this.size * stride];
+                this.heads[s] = new int[table_size];
+                this.next[s] = new int[this.size];
+            }
+            for (int w = 0; w < this.size; w++) {
+                this.encode(w);
+            }
+            // chain in reverse, so a chain lists its words in index order
+            for (int s = 0; s < NUM_SCHEMES; s++) {
+                for (int w = this.size - 1; w >= 0; w--) {
+                    int h = this.hash(s, this.codes[s], w * this.strides[s]);
+                    this.next[s][w] = this.heads[s][h];
+                    this.heads[s][h] = w + 1;
+                }
+            }
+            this.buildChunks();
+        }
+
+        private void encode(int w) {
+            for (int s = 0; s < NUM_SCHEMES; s++) {
+                WordIndex.encode(this.words[w], s, this.codes[s],
+                        w * this.strides[s]);
+            }
+        }
+
+        int hash(int scheme, long[] code, int from) {
+            long h = this.length;
+            for (int j = 0; j < this.strides[scheme]; j++) {
+                h = (h ^ code[from + j]) * 0x9E3779B97F4A7C15L;
+            }
+            return (int) (h >>> 40) & (this.heads[scheme].length - 1);
+        }
+
+        boolean equals(int scheme, int w, long[] code) {
+            int stride = this.strides[scheme];
+            for (int j = 0; j < stride; j++) {
+                if (this.codes[scheme][w * stride + j] != code[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int distance(Query query, int w) {
+            return WordIndex.distance(query, this.codes[query.scheme],
+                    w * this.strides[query.scheme]);
+        }
+
+        /**
+         * Splits the codes of the schemes with one bit per position into
+         * chunks and lists the words by the value of every chunk, for
+         * candidates().
+         */
+        private void buildChunks() {
+            for (int s = 0; s < NUM_SCHEMES; s++) {
+                if (POSITION_BITS[s] != 1) {
+                    continue;
+                }
+                int bits = this.length * LETTER_BITS[s];
+                // about log2(size) bits per chunk, so that a chunk value
+                // lists a word or so
+                int chunk_bits = 31 - Integer.numberOfLeadingZeros(
+                        Math.max(this.size, 2));
+                chunk_bits = Math.max(1, Math.min(MAX_CHUNK_BITS,
+                        Math.min(chunk_bits, bits)));
+                int num_chunks = (bits + chunk_bits - 1) / chunk_bits;
+                this.chunk_from[s] = new int[num_chunks + 1];
+                this.chunk_starts[s] = new int[num_chunks][];
+                this.chunk_words[s] = new int[num_chunks][];
+                for (int c = 0; c <= num_chunks; c++) {
+                    this.chunk_from[s][c] = c * bits / num_chunks;
+                }
+                for (int c = 0; c < num_chunks; c++) {
+                    this.buildChunk(s, c);
+                }
+            }
+        }
+
+        private void buildChunk(int s, int c) {
+            int from = this.chunk_from[s][c];
+            int width = this.chunk_from[s][c + 1] - from;
+            int[] starts = new int[(1 << width) + 1];
+            int[] values = new int[this.size];
+            for (int w = 0; w < this.size; w++) {
+                values[w] = chunk(this.codes[s], w * this.strides[s], from,
+                        width);
+                starts[values[w] + 1]++;
+            }
+            for (int v = 1; v < starts.length; v++) {
+                starts[v] += starts[v - 1];
+            }
+            int[] words = new int[this.size];
+            int[] fill = Arrays.copyOf(starts, starts.length - 1);
+            for (int w = 0; w < this.size; w++) {
+                words[fill[values[w]]++] = w;
+            }
+            this.chunk_starts[s][c] = starts;
+            this.chunk_words[s][c] = words;
+        }
+
+        /**
+         * Multi-index hashing: a code within max_distance of the query is,
+         * in at least one of its m chunks, within max_distance / m of the
+         * chunk of the query, so the words listed under those chunk values
+         * are all the words to check.
+         * @param query
+         * @param max_distance
+         * @return the candidates in index order, or null if checking every
+         * word of the bucket is cheaper
+         */
+        int[] candidates(Query query, int max_distance) {
+            int s = query.scheme;
+            if (this.chunk_from[s] == null || query.hasBad()) {
+                return null;
+            }
+            int num_chunks = this.chunk_from[s].length - 1;
+            int chunk_distance = max_distance / num_chunks;
+            // lookups, and words expected under them, against the scan; a
+            // candidate costs a few words of the scan (sorting them, and
+            // reading its code out of order)
+            double cost = 0;
+            for (int c = 0; c < num_chunks; c++) {
+                int width = this.chunk_from[s][c + 1] - this.chunk_from[s][c];
+                double values = 0;
+                double choose = 1;
+                for (int i = 0; i <= Math.min(chunk_distance, width); i++) {
+                    values += choose;
+                    choose = choose * (width - i) / (i + 1);
+                }
+                cost += values * (1 + CANDIDATE_COST * this.size /
+                        (1 << width));
+            }
+            if (cost >= this.size) {
+                return null;
+            }
+            int[] found = new int[16];
+            int count = 0;
+            for (int c = 0; c < num_chunks; c++) {
+                int from = this.chunk_from[s][c];
+                int width = this.chunk_from[s][c + 1] - from;
+                int value = chunk(query.code, 0, from, width);
+                int[] starts = this.chunk_starts[s][c];
+                int[] words = this.chunk_words[s][c];
+                // every value within chunk_distance of the chunk of the
+                // query, by flipping up to chunk_distance of its bits
+                int[] flips = new int[chunk_distance + 1];
+                int depth = 0;
+                flips[0] = -1;
+                while (true) {
+                    int v = value;
+                    for (int i = 1; i <= depth; i++) {
+                        v ^= 1 << flips[i];
+                    }
+                    int n = starts[v + 1] - starts[v];
+                    if (count + n > found.length) {
+                        found = Arrays.copyOf(found,
+                                Math.max(2 * found.length, count + n));
+                    }
+                    System.arraycopy(words, starts[v], found, count, n);
+                    count += n;
+                    // next set of flips: go deeper, or move the last flip
+                    // on, backing up when it runs out of bits
+                    if (depth < chunk_distance && flips[depth] + 1 < width) {
+                        flips[depth + 1] = flips[depth] + 1;
+                        depth++;
+                        continue;
+                    }
+                    while (depth > 0 && flips[depth] + 1 >= width) {
+                        depth--;
+                    }
+                    if (depth == 0) {
+                        break;
+                    }
+                    flips[depth]++;
+                }
+            }
+            // a word can be listed by several chunks
+            Arrays.sort(found, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || found[i] != found[unique - 1]) {
+                    found[unique++] = found[i];
+                }
+            }
+            return Arrays.copyOf(found, unique);
+        }
+    }
+
+    /**
+     * @return the width bits of the code from bit from on
+     */
+    private static int chunk(long[] code, int offset, int from, int width) {
+        int j = offset + (from >>> 6);
+        int shift = from & 63;
+        long bits = code[j] >>> shift;
+        if (shift + width > 64) {
+            bits |= code[j + 1] << (64 - shift);
+        }
+        return (int) (bits & ((1L << width) - 1));
+    }
+
+    /**
+     * Writes the code of the word in the scheme at code[from].
+     */
+    private static void encode(String word, int scheme, long[] code,
+            int from) {
+        int bits = LETTER_BITS[scheme];
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            int value;
+            switch (scheme) {
+            case LRUD:
+                value = (RIGHT.indexOf(c) >= 0 ? 1 : 0) |
+                        (DOWN.indexOf(c) >= 0 ? 2 : 0);
+                break;
+            case TRIAD:
+                value = TRIAD_OF[c - 'a'];
+                break;
+            case LR:
+                value = RIGHT.indexOf(c) >= 0 ? 1 : 0;
+                break;
+            default:
+                value = DOWN.indexOf(c) >= 0 ? 1 : 0;
+                break;
+            }
+            int bit = i * bits;
+            code[from + (bit >>> 6)] |= (long) value << (bit & 63);
+        }
+    }
+
+    /**
+     * XOR and popcount of the code at code[from] and the query.
+     */
+    private static int distance(Query query, long[] code, int from) {
+        int distance = 0;
+        for (int j = 0; j < query.code.length; j++) {
+            long x = (code[from + j] ^ query.code[j]) | query.bad[j];
+            if (POSITION_BITS[query.scheme] == 4) {
+                // one difference per triad, whichever bits differ
+                x = (x | (x >>> 1) | (x >>> 2) | (x >>> 3)) & NIBBLE_LOW;
+            }
+            distance += Long.bitCount(x);
+        }
+        return distance;
+    }
+
+    private Bucket[] buckets = new Bucket[0];
+    private int size = 0;
+    // the store the buckets are built from on their first query, null if
+    // the constructor builds them all
+    private DictionaryStore store = null;
+
+    /**
+     * Indexes the words of all the dictionaries. A word is kept with the
+     * first dictionary it is in; within a dictionary the words are in
+     * alphabetical order.
+     * @param dictionary
+     */
+    public WordIndex(Dictionary dictionary) {
+        HashSet<String> seen = new HashSet<String>();
+        for (int k = 1; k <= Dictionary.NUM_DICT; k++) {
+            ArrayList<String> words =
+                    new ArrayList<String>(dictionary.getDictionary(k));
+            Collections.sort(words);
+            for (String word : words) {
+                if (seen.add(word)) {
+                    this.add(word, k);
+                }
+            }
+        }
+        for (Bucket bucket : this.buckets) {
+            if (bucket != null) {
+                bucket.build();
+            }
+        }
+    }
+
+    /**
+     * Indexes the words of a store, with their lists, in the order of
+     * DictionaryStore.getRanking(length). Nothing is read here: the words
+     * of a length are read and encoded by the first query of that length,
+     * so a large store costs only the lengths that are asked for.
+     * @param store
+     */
+    public WordIndex(DictionaryStore store) {
+        this.store = store;
+        this.size = store.size();
+        this.buckets = new Bucket[store.getMaxLength() + 1];
+    }
+
+    /**
+     * Indexes the words of a word list, e.g. data/dictionary/unix_words.txt,
+     * all of them as dictionary list.
+     * @param words
+     * @param list
+     */
+    public WordIndex(Iterable<String> words, int list) {
+        for (String word : words) {
+            this.add(word, list);
+        }
+        for (Bucket bucket : this.buckets) {
+            if (bucket != null) {
+                bucket.build();
+            }
+        }
+    }
+
+    private void add(String word, int list) {
+        if (word.length() == 0) {
+            return;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                // no key code; cannot be typed on the letters
+                return;
+            }
+        }
+        if (word.length() >= this.buckets.length) {
+            this.buckets = Arrays.copyOf(this.buckets, word.length() + 1);
+        }
+        if (this.buckets[word.length()] == null) {
+            this.buckets[word.length()] = new Bucket(word.length());
+        }
+        this.buckets[word.length()].add(word, list);
+        this.size++;
+    }
+
+    /**
+     * @return number of indexed words
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private synchronized Bucket getBucket(int length) {
+        if (length >= this.buckets.length) {
+            return null;
+        }
+        if (this.buckets[length] == null && this.store != null) {
+            int[] ranking = this.store.getRanking(length);
+            if (ranking.length == 0) {
+                return null;
+            }
+            Bucket bucket = new Bucket(length);
+            for (int i : ranking) {
+                bucket.add(this.store.getWord(i), this.store.getList(i));
+            }
+            bucket.build();
+            this.buckets[length] = bucket;
+        }
+        return this.buckets[length];
+    }
+
+    /**
+     * @param query
+     * @param max_list only the words of dictionaries 1..max_list
+     * @return the words whose code is the query
+     */
+    public ArrayList<String> getMatchingWords(Query query, int max_list) {
+        ArrayList<String> result = new ArrayList<String>();
+        Bucket bucket = this.getBucket(query.length);
+        if (bucket == null || query.hasBad()) {
+            return result;
+        }
+        int s = query.scheme;
+        int w = bucket.heads[s][bucket.hash(s, query.code, 0)] - 1;
+        for (; w >= 0; w = bucket.next[s][w] - 1) {
+            if (bucket.lists[w] <= max_list &&
+                    bucket.equals(s, w, query.code)) {
+                result.add(bucket.words[w]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param query
+     * @param max_list only the words of dictionaries 1..max_list
+     * @param min_distance
+     * @param max_distance
+     * @return the words at a distance in [min_distance, max_distance] from
+     * the query, closest first
+     */
+    public ArrayList<String> getWordsWithin(Query query, int max_list,
+            int min_distance, int max_distance) {
+        ArrayList<String> result = new ArrayList<String>();
+        Bucket bucket = this.getBucket(query.length);
+        if (bucket == null || max_distance < min_distance) {
+            return result;
+        }
+        int[] candidates = bucket.candidates(query, max_distance);
+        int num_candidates = candidates == null ? bucket.size :
+                candidates.length;
+        // counting sort of the words by distance
+        int span = max_distance - min_distance + 1;
+        int[] distances = new int[num_candidates];
+        int[] counts = new int[span + 1];
+        for (int i = 0; i < num_candidates; i++) {
+            int w = candidates == null ? i : candidates[i];
+            distances[i] = -1;
+            if (bucket.lists[w] > max_list) {
+                continue;
+            }
+            int d = bucket.distance(query, w);
+            if (d >= min_distance && d <= max_distance) {
+                distances[i] = d - min_distance;
+                counts[d - min_distance + 1]++;
+            }
+        }
+        for (int d = 1; d <= span; d++) {
+            counts[d] += counts[d - 1];
+        }
+        String[] sorted = new String[counts[span]];
+        for (int i = 0; i < num_candidates; i++) {
+            int w = candidates == null ? i : candidates[i];
+            if (distances[i] >= 0) {
+                sorted[counts[distances[i]]++] = bucket.words[w];
+            }
+        }
+        result.addAll(Arrays.asList(sorted));
+        return result;
+    }
+
+    /**
+     * @param query
+     * @param max_list only the words of dictionaries 1..max_list
+     * @param k
+     * @return the (at most) k words closest to the query, closest first
+     */
+    public ArrayList<String> getClosestWords(Query query, int max_list,
+            int k) {
+        // widen the radius until it holds k words: all the words closer
+        // than the k-th are then in, in the order of the whole bucket
+        int max_distance = query.length * LETTER_BITS[query.scheme] /
+                POSITION_BITS[query.scheme];
+        ArrayList<String> result;
+        int radius = 0;
+        while (true) {
+            result = this.getWordsWithin(query, max_list, 0, radius);
+            if (result.size() >= k || radius >= max_distance) {
+                break;
+            }
+            radius = Math.min(max_distance, 2 * radius + 1);
+        }
+        if (result.size() > k) {
+            result.subList(k, result.size()).clear();
+        }
+        return result;
+    }
+
+    /**
+     * @param query
+     * @param word
+     * @return distance of the word from the query, Integer.MAX_VALUE if
+     * they differ in length
+     */
+    public static int distance(Query query, String word) {
+        if (word.length() != query.length) {
+            return Integer.MAX_VALUE;
+        }
+        long[] code = new long[query.code.length];
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                throw new IllegalArgumentException(
+                        "not a lower case word: " + word);
+            }
+        }
+        encode(word, query.scheme, code, 0);
+        return distance(query, code, 0);
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Autoregressive spectral density of a letter's g-force values, computed
+ * the same way as R's spec.ar(y, n.freq=NUM_FEATURES) in
+ * SpectogramFeatureWriter.R:
+ *
+ * - the AR model is fitted with the Yule-Walker equations (solved with the
+ *   Levinson-Durbin recursion) on the demeaned series,
+ * - the order is the one with the smallest AIC up to
+ *   min(n - 1, floor(10 * log10(n))),
+ * - the spectrum is evaluated at NUM_FEATURES frequencies evenly spaced
+ *   between 0 and 0.5 cycles per sample.
+ *
+ * The values are the fft1..fft30 features of the training data, so they
+ * can be computed in the same pass as the other features instead of going
+ * through gforce files and R.
+ *
+ * An instance only holds precomputed cos/sin tables, so it can be shared
+ * between threads.
+ */
+public class ARSpectrum {
+    public static final int NUM_FEATURES = 30;
+    // cos/sin tables are precomputed up to this order
+    private static final int TABLE_ORDER = 64;
+
+    private final int n_freq;
+    // cos/sin of 2*pi*f*k for every frequency f and order k = 1..TABLE_ORDER
+    private final double[][] cos;
+    private final double[][] sin;
+
+    public ARSpectrum() {
+        this(NUM_FEATURES);
+    }
+
+    public ARSpectrum(int n_freq) {
+        if (n_freq < 2) {
+            throw new IllegalArgumentException("need at least 2 frequencies");
+        }
+        this.n_freq = n_freq;
+        this.cos = new double[n_freq][TABLE_ORDER + 1];
+        this.sin = new double[n_freq][TABLE_ORDER + 1];
+        for (int j = 0; j < n_freq; j++) {
+            double freq = this.getFrequency(j);
+            for (int k = 1; k <= TABLE_ORDER; k++) {
+                this.cos[j][k] = Math.cos(2 * Math.PI * freq * k);
+                this.sin[j][k] = Math.sin(2 * Math.PI * freq * k);
+            }
+        }
+    }
+
+    public int getNumFrequencies() {
+        return this.n_freq;
+    }
+
+    /**
+     * @return the j'th frequency, in cycles per sample
+     */
+    public double getFrequency(int j) {
+        return 0.5 * j / (this.n_freq - 1);
+    }
+
+    /**
+     * @param signals
+     * @return spectral density of the g-force values at every frequency
+     */
+    public double[] compute(SignalBuffer signals) {
+        double[] spec = new double[this.n_freq];
+        this.compute(signals, spec);
+        return spec;
+    }
+
+    /**
+     * Computes the spectral density of the g-force values into spec.
+     * @param signals
+     * @param spec array of length at least getNumFrequencies()
+     */
+    public void compute(SignalBuffer signals, double[] spec) {
+        this.compute(signals, spec, 0);
+    }
+
+    /**
+     * Computes the spectral density of the g-force values into
+     * spec[offset..offset + getNumFrequencies()), e.g. the fft slots of a
+     * row of features.
+     * @param signals
+     * @param spec
+     * @param offset index of the first frequency in spec
+     */
+    public void compute(SignalBuffer signals, double[] spec, int offset) {
+        int n = signals.size();
+        int order_max = Math.min(n - 1, (int) Math.floor(10 * Math.log10(n)));
+        if (order_max < 1) {
+            throw new IllegalArgumentException("'order.max' must be >= 1: "
+                    + n + " readings");
+        }
+
+        // auto-covariances of the demeaned series up to lag order_max
+        double mean = FeatureExtractor.meanGForce(signals);
+        double[] acf = new double[order_max + 1];
+        for (int lag = 0; lag <= order_max; lag++) {
+            double sum = 0;
+            for (int t = 0; t + lag < n; t++) {
+                sum += (signals.getGForce(t) - mean)
+                        * (signals.getGForce(t + lag) - mean);
+            }
+            acf[lag] = sum / n;
+        }
+        if (acf[0] == 0) {
+            throw new IllegalArgumentException("zero-variance series");
+        }
+
+        // Levinson-Durbin: fit every order up to order_max and keep the one
+        // with the smallest AIC
+        double[] phi = new double[order_max + 1];
+        double[] prev = new double[order_max + 1];
+        double[] best = new double[order_max + 1];
+        double var = acf[0];
+        int order = 0;
+        double best_var = var;
+        double best_aic = n * Math.log(var);
+        for (int l = 1; l <= order_max; l++) {
+            double num = acf[l];
+            for (int k = 1; k < l; k++) {
+                num -= prev[k] * acf[l - k];
+            }
+            double reflection = num / var;
+            phi[l] = reflection;
+            for (int k = 1; k < l; k++) {
+                phi[k] = prev[k] - reflection * prev[l - k];
+            }
+            var = var * (1 - reflection * reflection);
+            double aic = n * Math.log(var) + 2 * l;
+            if (aic < best_aic) {
+                best_aic = aic;
+                order = l;
+                best_var = var;
+                System.arraycopy(phi, 1, best, 1, l);
+            }
+            System.arraycopy(phi, 1, prev, 1, l);
+        }
+        // same small sample correction as R's ar.yw
+        double var_pred = best_var * n / (n - (order + 1));
+
+        for (int j = 0; j < this.n_freq; j++) {
+            double cs = 0;
+            double sn = 0;
+            for (int k = 1; k <= order; k++) {
+                cs += best[k] * this.cos(j, k);
+                sn += best[k] * this.sin(j, k);
+            }
+            spec[offset + j] = var_pred / ((1 - cs) * (1 - cs) + sn * sn);
+        }
+    }
+
+    private double cos(int j, int k) {
+        if (k <= TABLE_ORDER) {
+            return this.cos[j][k];
+        }
+        return Math.cos(2 * Math.PI * this.getFrequency(j) * k);
+    }
+
+    private double sin(int j, int k) {
+        if (k <= TABLE_ORDER) {
+            return this.sin[j][k];
+        }
+        return Math.sin(2 * Math.PI * this.getFrequency(j) * k);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Fits the arff templates of code/scripts to the columns of a features
+ * file.
+ *
+ * The templates list the attributes of the default columns (the
+ * statistics and fft1..fft30). A features file written with other columns
+ * (-axes, -wavelet, ...) needs other attributes, so the NUMERIC attributes
+ * of the template are replaced by one per feature column of the header of
+ * the file; the @relation line, the class attribute and @data are kept.
+ */
+public class ArffTemplate {
+
+    /**
+     * @param template the lines of an arff template, "\n" separated
+     * @param heading header line of a features file
+     * @param num_labels number of label columns at the end of the header
+     * @return the template with the attributes of the feature columns
+     */
+    public static String withColumns(String template, String heading,
+            int num_labels) {
+        String[] columns = heading.split(",");
+        StringBuilder sb = new StringBuilder();
+        boolean replaced = false;
+        for (String line : template.split("\n", -1)) {
+            String trimmed = line.trim();
+            if (!trimmed.startsWith("@attribute") ||
+                    !trimmed.endsWith("NUMERIC")) {
+                sb.append(line).append('\n');
+                continue;
+            }
+            if (replaced) {
+                continue;
+            }
+            for (int i = 0; i < columns.length - num_labels; i++) {
+                sb.append("@attribute ").append(columnName(columns[i]))
+                  .append(" NUMERIC\n");
+            }
+            replaced = true;
+        }
+        // split() keeps the text after the last "\n" as a line of its own
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * @param column a column of a header, e.g. ' rms' or '"fft1"' (the
+     * files written from R quote the names)
+     * @return the name of the column, without spaces or quotes
+     */
+    static String columnName(String column) {
+        String name = column.trim();
+        if (name.length() >= 2 && name.startsWith("\"") &&
+                name.endsWith("\"")) {
+            name = name.substring(1, name.length() - 1).trim();
+        }
+        return name;
+    }
+}
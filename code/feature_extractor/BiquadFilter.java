@@ -0,0 +1,56 @@
+/**
+ * Second order IIR filter in transposed direct form II. bandPass() gives
+ * the band-pass of the Audio EQ Cookbook (constant 0 dB peak gain).
+ */
+public class BiquadFilter implements SignalFilter {
+    private double b0;
+    private double b1;
+    private double b2;
+    private double a1;
+    private double a2;
+    private double z1 = 0;
+    private double z2 = 0;
+
+    /**
+     * Coefficients normalized so that a0 = 1.
+     */
+    public BiquadFilter(double b0, double b1, double b2, double a1,
+            double a2) {
+        this.b0 = b0;
+        this.b1 = b1;
+        this.b2 = b2;
+        this.a1 = a1;
+        this.a2 = a2;
+    }
+
+    /**
+     * @param sample_rate readings per second (about 128 for the recordings)
+     * @param center center frequency of the band, in Hz
+     * @param q quality factor; the band is center/q wide
+     * @return band-pass filter
+     */
+    public static BiquadFilter bandPass(double sample_rate, double center,
+            double q) {
+        if (center <= 0 || center >= sample_rate / 2 || q <= 0) {
+            throw new IllegalArgumentException("bad band-pass: center " +
+                    center + " Hz, q " + q + ", sample rate " + sample_rate);
+        }
+        double w0 = 2 * Math.PI * center / sample_rate;
+        double alpha = Math.sin(w0) / (2 * q);
+        double a0 = 1 + alpha;
+        return new BiquadFilter(alpha / a0, 0, -alpha / a0,
+                -2 * Math.cos(w0) / a0, (1 - alpha) / a0);
+    }
+
+    public double filter(double value) {
+        double output = this.b0 * value + this.z1;
+        this.z1 = this.b1 * value - this.a1 * output + this.z2;
+        this.z2 = this.b2 * value - this.a2 * output;
+        return output;
+    }
+
+    public void reset() {
+        this.z1 = 0;
+        this.z2 = 0;
+    }
+}
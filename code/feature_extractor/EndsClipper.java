@@ -0,0 +1,91 @@
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+ * Preprocessing of the raw word recordings, in place of
+ * preprocessor/ends_clipper.py: the first and last CLIP_THRESH of every
+ * recording are dropped (the phone being picked up and put down), and the
+ * g-force can be smoothed.
+ *
+ * The file is read once and the clipped recording is a view of it, so no
+ * clipped copy of the data set is written. The readings are the same as in
+ * the files ends_clipper.py writes:
+ *
+ * - ends_clipper.py reads the first line as a header; the raw files have
+ *   none, so their first reading is dropped as well,
+ * - the timestamps are relative to the first reading that is kept, as when
+ *   the clipped file was read back.
+ *
+ * ends_clipper.py smoothed the g-force but only wrote time, x, y and z, so
+ * the smoothing never reached the letters. Here it is applied to the
+ * g-force column when a filter is set.
+ */
+public class EndsClipper {
+    public static final long CLIP_THRESH = 150000; // 150ms
+    // the two exponential passes of ends_clipper.py
+    public static final String SMOOTHING = "exp:0.09,exp:0.2";
+
+    private long clip_thresh;
+    private FilterChain filters = null;
+    private SignalCSVReader reader = new SignalCSVReader();
+
+    public EndsClipper() {
+        this(CLIP_THRESH);
+    }
+
+    /**
+     * @param clip_thresh micro-seconds dropped at each end
+     */
+    public EndsClipper(long clip_thresh) {
+        this.clip_thresh = clip_thresh;
+        this.reader.setFactor(1);
+    }
+
+    /**
+     * Filters the g-force of the clipped recordings.
+     * @param filters null for no filtering
+     */
+    public void setFilters(FilterChain filters) {
+        this.filters = filters;
+    }
+
+    /**
+     * Reads a raw recording and clips its ends.
+     * @param file csv file of the recording
+     * @return the clipped readings, timestamps in micro-seconds relative to
+     * the first of them
+     * @throws IOException
+     */
+    public SignalBuffer read(File file) throws IOException {
+        // nano-seconds relative to the first line
+        SignalBuffer signals = this.reader.read(file);
+        if (signals.size() < 2) {
+            return signals.slice(0, 0);
+        }
+        // drop the "header"; the clipping is measured from the next reading
+        signals = signals.slice(1, signals.size());
+        long start = signals.getTimeStamp(0);
+        int n = signals.size();
+
+        // first reading at least clip_thresh after the start (the times
+        // are compared in whole micro-seconds, as in ends_clipper.py)
+        int start_index = signals.firstIndexAtOrAfter(
+                start + this.clip_thresh * SignalCSVReader.FACTOR);
+        // first reading at least clip_thresh before the end
+        long end = (signals.getTimeStamp(n - 1) - start)
+                / SignalCSVReader.FACTOR;
+        int end_index = signals.firstIndexAtOrAfter(
+                start + (end - this.clip_thresh) * SignalCSVReader.FACTOR);
+        start_index = Math.min(Math.max(start_index, 1), n - 1);
+        end_index = Math.min(Math.max(end_index, 1), n - 1);
+
+        SignalBuffer clipped = signals.slice(start_index,
+                Math.max(start_index, end_index));
+        clipped.rebaseTimeStamps(SignalCSVReader.FACTOR);
+        if (this.filters != null) {
+            this.filters.apply(clipped);
+        }
+        return clipped;
+    }
+}
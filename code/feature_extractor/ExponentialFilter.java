@@ -0,0 +1,34 @@
+/**
+ * Exponential smoothing, as exp_smooth() in ends_clipper.py:
+ * out[0] = in[0], out[i] = out[i-1] + alpha * (in[i] - out[i-1]).
+ */
+public class ExponentialFilter implements SignalFilter {
+    private double alpha;
+    private double output;
+    private boolean started = false;
+
+    /**
+     * @param alpha weight of the new value, in (0, 1]
+     */
+    public ExponentialFilter(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]: "
+                    + alpha);
+        }
+        this.alpha = alpha;
+    }
+
+    public double filter(double value) {
+        if (!this.started) {
+            this.started = true;
+            this.output = value;
+        } else {
+            this.output += this.alpha * (value - this.output);
+        }
+        return this.output;
+    }
+
+    public void reset() {
+        this.started = false;
+    }
+}
@@ -0,0 +1,307 @@
+/**
+ * A Fast Fourier Transform of a fixed length, with the twiddle factors and
+ * the bit-reversal permutation computed once in the constructor.
+ *
+ * Power of 2 lengths use an in-place iterative radix-2 transform. Any other
+ * length goes through Bluestein's algorithm, which rewrites the transform
+ * as a convolution computed with a power of 2 plan.
+ *
+ * The transforms are not normalized, except inverse() which divides by n
+ * so that inverse(forward(x)) == x. A plan keeps scratch buffers, so it
+ * should not be shared between threads.
+ */
+public class FFTPlan {
+    private final int n;
+    private final boolean power_of_2;
+
+    // radix-2: cos/sin of 2*pi*k/n for k < n/2 and the bit-reversed indices
+    private double[] cos;
+    private double[] sin;
+    private int[] bitreverse;
+
+    // Bluestein: the chirp exp(-i*pi*k^2/n), the transform of its conjugate
+    // padded to m, and the power of 2 plan of length m
+    private double[] chirp_re;
+    private double[] chirp_im;
+    private double[] filter_re;
+    private double[] filter_im;
+    private double[] work_re;
+    private double[] work_im;
+    private FFTPlan convolution;
+
+    // real input transforms: half length plan and its post-processing
+    // twiddles cos/sin of 2*pi*k/n for k <= n/4
+    private FFTPlan half;
+    private double[] real_cos;
+    private double[] real_sin;
+    private double[] real_re;
+    private double[] real_im;
+
+    public FFTPlan(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("FFT length must be positive: "
+                    + n);
+        }
+        this.n = n;
+        this.power_of_2 = isPowerOf2(n);
+        if (this.power_of_2) {
+            this.initRadix2();
+        } else {
+            this.initBluestein();
+        }
+    }
+
+    public int size() {
+        return this.n;
+    }
+
+    public static boolean isPowerOf2(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    private void initRadix2() {
+        int nu = Integer.numberOfTrailingZeros(this.n);
+        this.cos = new double[this.n / 2];
+        this.sin = new double[this.n / 2];
+        for (int k = 0; k < this.n / 2; k++) {
+            double arg = 2 * Math.PI * k / this.n;
+            this.cos[k] = Math.cos(arg);
+            this.sin[k] = Math.sin(arg);
+        }
+        this.bitreverse = new int[this.n];
+        for (int k = 0; k < this.n; k++) {
+            this.bitreverse[k] = nu == 0 ? 0 : Integer.reverse(k) >>> (32 - nu);
+        }
+    }
+
+    private void initBluestein() {
+        int m = Integer.highestOneBit(2 * this.n - 1) << 1;
+        this.convolution = new FFTPlan(m);
+        this.chirp_re = new double[this.n];
+        this.chirp_im = new double[this.n];
+        this.filter_re = new double[m];
+        this.filter_im = new double[m];
+        this.work_re = new double[m];
+        this.work_im = new double[m];
+        long modulus = 2L * this.n;
+        for (int k = 0; k < this.n; k++) {
+            // k^2 mod 2n keeps the argument small and precise
+            long k2 = ((long) k * k) % modulus;
+            double arg = Math.PI * k2 / this.n;
+            this.chirp_re[k] = Math.cos(arg);
+            this.chirp_im[k] = -Math.sin(arg);
+        }
+        this.filter_re[0] = this.chirp_re[0];
+        this.filter_im[0] = -this.chirp_im[0];
+        for (int k = 1; k < this.n; k++) {
+            this.filter_re[k] = this.chirp_re[k];
+            this.filter_im[k] = -this.chirp_im[k];
+            this.filter_re[m - k] = this.chirp_re[k];
+            this.filter_im[m - k] = -this.chirp_im[k];
+        }
+        this.convolution.forward(this.filter_re, this.filter_im);
+    }
+
+    /**
+     * In-place direct transform.
+     * @param re real part, length n
+     * @param im imaginary part, length n
+     */
+    public void forward(double[] re, double[] im) {
+        this.transform(re, im, true);
+    }
+
+    /**
+     * In-place inverse transform, divided by n.
+     * @param re real part, length n
+     * @param im imaginary part, length n
+     */
+    public void inverse(double[] re, double[] im) {
+        this.transform(re, im, false);
+        double scale = 1.0 / this.n;
+        for (int k = 0; k < this.n; k++) {
+            re[k] *= scale;
+            im[k] *= scale;
+        }
+    }
+
+    /**
+     * Direct transform of the input into caller supplied buffers. The
+     * input arrays are not modified.
+     */
+    public void forward(double[] input_re, double[] input_im,
+            double[] output_re, double[] output_im) {
+        System.arraycopy(input_re, 0, output_re, 0, this.n);
+        System.arraycopy(input_im, 0, output_im, 0, this.n);
+        this.transform(output_re, output_im, true);
+    }
+
+    /**
+     * In-place transform without any normalization.
+     * @param re real part, length n
+     * @param im imaginary part, length n
+     * @param direct true = direct transform, false = inverse transform
+     */
+    public void transform(double[] re, double[] im, boolean direct) {
+        if (re.length < this.n || im.length < this.n) {
+            throw new IllegalArgumentException("buffers shorter than " +
+                    this.n);
+        }
+        if (this.power_of_2) {
+            this.radix2(re, im, direct);
+        } else if (direct) {
+            this.bluestein(re, im);
+        } else {
+            // inverse(x) = conj(direct(conj(x)))
+            for (int k = 0; k < this.n; k++) {
+                im[k] = -im[k];
+            }
+            this.bluestein(re, im);
+            for (int k = 0; k < this.n; k++) {
+                im[k] = -im[k];
+            }
+        }
+    }
+
+    /**
+     * Direct transform of a real signal. Only the first n/2 + 1 bins are
+     * written; the others are the complex conjugates of these.
+     * @param input real signal, length n
+     * @param output_re real part of the bins, length at least n/2 + 1
+     * @param output_im imaginary part of the bins, length at least n/2 + 1
+     */
+    public void realForward(double[] input, double[] output_re,
+            double[] output_im) {
+        int bins = this.n / 2 + 1;
+        if (output_re.length < bins || output_im.length < bins) {
+            throw new IllegalArgumentException("buffers shorter than " +
+                    bins);
+        }
+        if (!this.power_of_2 || this.n < 4) {
+            this.realForwardComplex(input, output_re, output_im);
+            return;
+        }
+        if (this.half == null) {
+            this.initReal();
+        }
+        // transform the even/odd samples as one complex signal of length
+        // n/2, then separate the two spectra
+        int h = this.n / 2;
+        for (int k = 0; k < h; k++) {
+            output_re[k] = input[2 * k];
+            output_im[k] = input[2 * k + 1];
+        }
+        this.half.radix2(output_re, output_im, true);
+
+        double z0_re = output_re[0];
+        double z0_im = output_im[0];
+        output_re[0] = z0_re + z0_im;
+        output_im[0] = 0;
+        output_re[h] = z0_re - z0_im;
+        output_im[h] = 0;
+        for (int k = 1; k <= h / 2; k++) {
+            int j = h - k;
+            double a_re = output_re[k];
+            double a_im = output_im[k];
+            double c_re = output_re[j];
+            double c_im = output_im[j];
+            double even_re = (a_re + c_re) / 2;
+            double even_im = (a_im - c_im) / 2;
+            double odd_re = (a_im + c_im) / 2;
+            double odd_im = -(a_re - c_re) / 2;
+            double t_re = odd_re * this.real_cos[k] + odd_im * this.real_sin[k];
+            double t_im = odd_im * this.real_cos[k] - odd_re * this.real_sin[k];
+            output_re[k] = even_re + t_re;
+            output_im[k] = even_im + t_im;
+            output_re[j] = even_re - t_re;
+            output_im[j] = -(even_im - t_im);
+        }
+    }
+
+    private void initReal() {
+        this.half = new FFTPlan(this.n / 2);
+        this.real_cos = new double[this.n / 4 + 1];
+        this.real_sin = new double[this.n / 4 + 1];
+        for (int k = 0; k <= this.n / 4; k++) {
+            double arg = 2 * Math.PI * k / this.n;
+            this.real_cos[k] = Math.cos(arg);
+            this.real_sin[k] = Math.sin(arg);
+        }
+    }
+
+    private void realForwardComplex(double[] input, double[] output_re,
+            double[] output_im) {
+        if (this.real_re == null) {
+            this.real_re = new double[this.n];
+            this.real_im = new double[this.n];
+        }
+        System.arraycopy(input, 0, this.real_re, 0, this.n);
+        java.util.Arrays.fill(this.real_im, 0);
+        this.transform(this.real_re, this.real_im, true);
+        int bins = this.n / 2 + 1;
+        System.arraycopy(this.real_re, 0, output_re, 0, bins);
+        System.arraycopy(this.real_im, 0, output_im, 0, bins);
+    }
+
+    private void radix2(double[] re, double[] im, boolean direct) {
+        int n = this.n;
+        for (int k = 0; k < n; k++) {
+            int r = this.bitreverse[k];
+            if (r > k) {
+                double t = re[k];
+                re[k] = re[r];
+                re[r] = t;
+                t = im[k];
+                im[k] = im[r];
+                im[r] = t;
+            }
+        }
+        double sign = direct ? -1 : 1;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0, t = 0; k < half; k++, t += step) {
+                    double c = this.cos[t];
+                    double s = sign * this.sin[t];
+                    int a = start + k;
+                    int b = a + half;
+                    double t_re = re[b] * c - im[b] * s;
+                    double t_im = re[b] * s + im[b] * c;
+                    re[b] = re[a] - t_re;
+                    im[b] = im[a] - t_im;
+                    re[a] += t_re;
+                    im[a] += t_im;
+                }
+            }
+        }
+    }
+
+    private void bluestein(double[] re, double[] im) {
+        int m = this.convolution.size();
+        double[] a_re = this.work_re;
+        double[] a_im = this.work_im;
+        for (int k = 0; k < this.n; k++) {
+            a_re[k] = re[k] * this.chirp_re[k] - im[k] * this.chirp_im[k];
+            a_im[k] = re[k] * this.chirp_im[k] + im[k] * this.chirp_re[k];
+        }
+        for (int k = this.n; k < m; k++) {
+            a_re[k] = 0;
+            a_im[k] = 0;
+        }
+        this.convolution.forward(a_re, a_im);
+        for (int k = 0; k < m; k++) {
+            double p_re = a_re[k] * this.filter_re[k]
+                    - a_im[k] * this.filter_im[k];
+            double p_im = a_re[k] * this.filter_im[k]
+                    + a_im[k] * this.filter_re[k];
+            a_re[k] = p_re;
+            a_im[k] = p_im;
+        }
+        this.convolution.inverse(a_re, a_im);
+        for (int k = 0; k < this.n; k++) {
+            re[k] = a_re[k] * this.chirp_re[k] - a_im[k] * this.chirp_im[k];
+            im[k] = a_re[k] * this.chirp_im[k] + a_im[k] * this.chirp_re[k];
+        }
+    }
+}
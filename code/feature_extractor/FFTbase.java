@@ -1,8 +1,17 @@
 //author: Orlando Selenu
 public class FFTbase {
+    // the plan of the last length transformed, reused while it matches
+    private FFTPlan plan;
+    private double[] xReal;
+    private double[] xImag;
+
     /**
-     * The Fast Fourier Transform (generic version, with NO optimizations).
-     * 
+     * The Fast Fourier Transform.
+     *
+     * The transform itself is done by an FFTPlan, so the twiddle factors
+     * and the bit-reversal table are only computed when the length changes,
+     * and lengths that are not a power of 2 are supported as well.
+     *
      * @param inputReal
      *            an array of length n, the real part
      * @param inputImag
@@ -13,113 +22,51 @@ public class FFTbase {
      */
     public double[] fft(final double[] inputReal, double[] inputImag,
       boolean DIRECT) {
-  // - n is the dimension of the problem
-  // - nu is its logarithm in base e
-  int n = inputReal.length;
- 
-  // If n is a power of 2, then ld is an integer (_without_ decimals)
-  double ld = Math.log(n) / Math.log(2.0);
- 
-  // Here I check if n is a power of 2. If exist decimals in ld, I quit
-  // from the function returning null.
-  if (((int) ld) - ld != 0) {
-      System.out.println("The number of elements is not a power of 2.");
-      return null;
-  }
- 
-  // Declaration and initialization of the variables
-  // ld should be an integer, actually, so I don't lose any information in
-  // the cast
-  int nu = (int) ld;
-  int n2 = n / 2;
-  int nu1 = nu - 1;
-  double[] xReal = new double[n];
-  double[] xImag = new double[n];
-  double tReal, tImag, p, arg, c, s;
- 
-  // Here I check if I'm going to do the direct transform or the inverse
-  // transform.
-  double constant;
-  if (DIRECT)
-      constant = -2 * Math.PI;
-  else
-      constant = 2 * Math.PI;
- 
-  // I don't want to overwrite the input arrays, so here I copy them. This
-  // choice adds \Theta(2n) to the complexity.
-  for (int i = 0; i < n; i++) {
-      xReal[i] = inputReal[i];
-      xImag[i] = inputImag[i];
-  }
- 
-  // First phase - calculation
-  int k = 0;
-  for (int l = 1; l <= nu; l++) {
-      while (k < n) {
-    for (int i = 1; i <= n2; i++) {
-        p = bitreverseReference(k >> nu1, nu);
-        // direct FFT or inverse FFT
-        arg = constant * p / n;
-        c = Math.cos(arg);
-        s = Math.sin(arg);
-        tReal = xReal[k + n2] * c + xImag[k + n2] * s;
-        tImag = xImag[k + n2] * c - xReal[k + n2] * s;
-        xReal[k + n2] = xReal[k] - tReal;
-        xImag[k + n2] = xImag[k] - tImag;
-        xReal[k] += tReal;
-        xImag[k] += tImag;
-        k++;
+  double[] newArray = new double[inputReal.length * 2];
+  this.fft(inputReal, inputImag, DIRECT, newArray);
+  return newArray;
     }
-    k += n2;
-      }
-      k = 0;
-      nu1--;
-      n2 /= 2;
-  }
- 
-  // Second phase - recombination
-  k = 0;
-  int r;
-  while (k < n) {
-      r = bitreverseReference(k, nu);
-      if (r > k) {
-    tReal = xReal[k];
-    tImag = xImag[k];
-    xReal[k] = xReal[r];
-    xImag[k] = xImag[r];
-    xReal[r] = tReal;
-    xImag[r] = tImag;
-      }
-      k++;
-  }
- 
-  // Here I have to mix xReal and xImag to have an array (yes, it should
-  // be possible to do this stuff in the earlier parts of the code, but
-  // it's here to readibility).
-  double[] newArray = new double[xReal.length * 2];
+
+    /**
+     * Same as fft(inputReal, inputImag, DIRECT), but writes the result into
+     * a caller supplied array instead of allocating a new one.
+     *
+     * @param output
+     *            an array of length at least 2n; element 2k is the real part
+     *            and element 2k+1 the imaginary part of the k'th bin
+     */
+    public void fft(final double[] inputReal, double[] inputImag,
+      boolean DIRECT, double[] output) {
+  int n = inputReal.length;
+  FFTPlan plan = this.getPlan(n);
+
+  // I don't want to overwrite the input arrays, so here I copy them.
+  System.arraycopy(inputReal, 0, xReal, 0, n);
+  System.arraycopy(inputImag, 0, xImag, 0, n);
+  // Like Mathematica's Fourier, the direct transform here uses the
+  // positive exponent, which is FFTPlan's inverse direction.
+  plan.transform(xReal, xImag, !DIRECT);
+
+  // Here I have to mix xReal and xImag to have an array
   double radice = 1 / Math.sqrt(n);
-  for (int i = 0; i < newArray.length; i += 2) {
-      int i2 = i / 2;
+  for (int i = 0; i < n; i++) {
       // I used Stephen Wolfram's Mathematica as a reference so I'm going
       // to normalize the output while I'm copying the elements.
-      newArray[i] = xReal[i2] * radice;
-      newArray[i + 1] = xImag[i2] * radice;
+      output[2 * i] = xReal[i] * radice;
+      output[2 * i + 1] = xImag[i] * radice;
   }
-  return newArray;
     }
- 
+
     /**
-     * The reference bitreverse function.
+     * @param n length of the transform
+     * @return the plan for transforms of length n
      */
-    private static int bitreverseReference(int j, int nu) {
-  int j2;
-  int j1 = j;
-  int k = 0;
-  for (int i = 1; i <= nu; i++) {
-      j2 = j1 / 2;
-      k = 2 * k + j1 - 2 * j2;
-      j1 = j2;
+    public FFTPlan getPlan(int n) {
+  if (plan == null || plan.size() != n) {
+      plan = new FFTPlan(n);
+      xReal = new double[n];
+      xImag = new double[n];
   }
-  return k;
+  return plan;
     }
 }
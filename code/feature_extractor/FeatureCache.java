@@ -0,0 +1,241 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * On-disk cache of the (unlabeled) feature rows of the recordings, so that
+ * a rerun of FeatureExtractor only recomputes the recordings that are new
+ * or have changed.
+ *
+ * The rows are keyed by the SHA-1 of the content of the recording. The
+ * settings that change the rows (thresholds, windowing, filters and the
+ * extra features) are stored with the cache, and a cache written with other
+ * settings is discarded. The size and modification time of every file are
+ * remembered with its hash, so an unchanged file is recognized without
+ * reading it. The label is not cached; it comes from the directory of the
+ * recording.
+ *
+ * The cache is a single binary file of doubles; a row is stored as the
+ * values of its FeatureSchema. It can be used from several threads.
+ */
+public class FeatureCache {
+    private static final int MAGIC = 0x46434833; // "FCH3"
+
+    private static class FileStat {
+        long size;
+        long modified;
+        String digest;
+    }
+
+    private File cacheFile;
+    private String settings;
+    // path -> size, modification time and hash of the last run
+    private Map<String, FileStat> stats =
+            new ConcurrentHashMap<String, FileStat>();
+    // hash -> feature rows of the recording
+    private Map<String, double[][]> rows =
+            new ConcurrentHashMap<String, double[][]>();
+    // paths looked up in this run; only these are saved
+    private Map<String, FileStat> used =
+            new ConcurrentHashMap<String, FileStat>();
+    private AtomicInteger hits = new AtomicInteger();
+    private AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Loads the cache file if it exists and was written with the same
+     * settings.
+     * @param cacheFile
+     * @param settings description of the settings that change the rows
+     * @throws IOException
+     */
+    public FeatureCache(File cacheFile, String settings) throws IOException {
+        this.cacheFile = cacheFile;
+        this.settings = settings;
+        if (cacheFile.exists()) {
+            this.load();
+        }
+    }
+
+    private void load() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(this.cacheFile)));
+        try {
+            if (in.readInt() != MAGIC ||
+                    !in.readUTF().equals(this.settings)) {
+                return;
+            }
+            int num_files = in.readInt();
+            for (int i = 0; i < num_files; i++) {
+                String path = in.readUTF();
+                FileStat stat = new FileStat();
+                stat.size = in.readLong();
+                stat.modified = in.readLong();
+                stat.digest = in.readUTF();
+                this.stats.put(path, stat);
+            }
+            int num_digests = in.readInt();
+            for (int i = 0; i < num_digests; i++) {
+                String digest = in.readUTF();
+                double[][] values = new double[in.readInt()][];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = new double[in.readInt()];
+                    for (int k = 0; k < values[j].length; k++) {
+                        values[j][k] = in.readDouble();
+                    }
+                }
+                this.rows.put(digest, values);
+            }
+        } catch (EOFException e) {
+            // truncated cache, start over
+            this.stats.clear();
+            this.rows.clear();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Hash of the content of a recording. The file is only read if its size
+     * or modification time changed since the last run.
+     * @param file
+     * @return key of the recording
+     * @throws IOException
+     */
+    public String getKey(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        FileStat stat = this.stats.get(path);
+        long size = file.length();
+        long modified = file.lastModified();
+        if (stat == null || stat.size != size || stat.modified != modified) {
+            stat = new FileStat();
+            stat.size = size;
+            stat.modified = modified;
+            stat.digest = digest(file);
+            this.stats.put(path, stat);
+        }
+        this.used.put(path, stat);
+        return stat.digest;
+    }
+
+    private static String digest(File file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] hash = md.digest(Files.readAllBytes(file.toPath()));
+        StringBuilder sb = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+              .append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param key
+     * @param schema columns of the rows
+     * @return the unlabeled feature rows of the recording, null if they are
+     * not in the cache
+     */
+    public ArrayList<Features> get(String key, FeatureSchema schema) {
+        double[][] values = this.rows.get(key);
+        if (values == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        ArrayList<Features> featuresList = new ArrayList<Features>(
+                values.length);
+        for (double[] row : values) {
+            if (row.length != schema.size()) {
+                throw new IllegalArgumentException("cached row of " +
+                        row.length + " values, schema of " + schema.size());
+            }
+            Features features = schema.newFeatures();
+            features.set(0, row);
+            featuresList.add(features);
+        }
+        return featuresList;
+    }
+
+    /**
+     * @param key
+     * @param featuresList feature rows of the recording
+     */
+    public void put(String key, ArrayList<Features> featuresList) {
+        double[][] values = new double[featuresList.size()][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = featuresList.get(i).getValues().clone();
+        }
+        this.rows.put(key, values);
+    }
+
+    public int getHits() {
+        return this.hits.get();
+    }
+
+    public int getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Writes the entries of the recordings looked up in this run; the
+     * recordings that were removed are dropped from the cache.
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        File tmp = new File(this.cacheFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeUTF(this.settings);
+            ConcurrentHashMap<String, double[][]> live =
+                    new ConcurrentHashMap<String, double[][]>();
+            out.writeInt(this.used.size());
+            for (Map.Entry<String, FileStat> entry : this.used.entrySet()) {
+                FileStat stat = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(stat.size);
+                out.writeLong(stat.modified);
+                out.writeUTF(stat.digest);
+                double[][] values = this.rows.get(stat.digest);
+                if (values != null) {
+                    live.put(stat.digest, values);
+                }
+            }
+            out.writeInt(live.size());
+            for (Map.Entry<String, double[][]> entry : live.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (double[] row : entry.getValue()) {
+                    out.writeInt(row.length);
+                    for (double value : row) {
+                        out.writeDouble(value);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), this.cacheFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -1,17 +1,14 @@
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.math.BigInteger;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.Scanner;
-import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * @author aks0
@@ -20,19 +17,48 @@ import java.util.StringTokenizer;
 public class FeatureExtractor {
     
     public static final double G = 9.81;
-    public static final BigInteger FACTOR = new BigInteger("1000");
     public static boolean WANT_GFORCE_DATA = false;
+    public static boolean WANT_FFT_FEATURES = false;
     public static boolean WANT_LR_LABEL = false;
     public static boolean WANT_UP_LABEL = false;
-    public static final boolean WANT_PAIRED_LABEL = false;
+    public static boolean WANT_PAIRED_LABEL = false;
     public static boolean WANT_TRIAD_LABEL = false;
-    public static final boolean WANT_SEPTET_LABEL = false;
-    public static BigInteger BEFORE_THRESH = new BigInteger("40000"); // 40ms
-    public static BigInteger AFTER_THRESH = new BigInteger("85000"); // 85ms
-    public static final boolean WANT_WINDOW_SIGNAL = false;
+    public static boolean WANT_SEPTET_LABEL = false;
+    public static boolean WANT_ALL_LABELS = false;
+    public static long BEFORE_THRESH = 40000; // 40ms
+    public static long AFTER_THRESH = 85000; // 85ms
+    public static boolean WANT_WINDOW_SIGNAL = false;
+    public static int WINDOW_PEAKS = 1;
+    public static boolean WANT_AXIS_FEATURES = false;
     private String inputDir = null;
-    
-    private static ArrayList<Features> featuresList;
+    private int threads = 1;
+    private boolean want_cache = false;
+    private String filter_spec = null;
+    // filters keep state, so every thread has its own chain
+    private ThreadLocal<FilterChain> filters = null;
+    private String wavelet_name = null;
+    // the wavelets keep a buffer, so every thread has its own
+    private ThreadLocal<Wavelet> wavelets = null;
+    // the spectrograms keep their plan and buffers, so every thread has
+    // its own
+    private ThreadLocal<Spectrogram> spectrograms = null;
+    // the accumulator of the g-force statistics is reset and reused for
+    // every letter, so every thread has its own
+    private ThreadLocal<Moments> moments = new ThreadLocal<Moments>() {
+        @Override
+        protected Moments initialValue() {
+            return new Moments();
+        }
+    };
+    private FeatureCache cache = null;
+    private ARSpectrum spectrum = new ARSpectrum();
+    // columns of the rows, and the slots of the fft, wavelet and stft
+    // features (-1 when they are not computed)
+    private FeatureSchema schema = FeatureSchema.DEFAULT;
+    private int axes_slot = -1;
+    private int fft_slot = -1;
+    private int wavelet_slot = -1;
+    private int stft_slot = -1;
 
     private void parseCommandLineArgs(String[] args) {
         if (args.length < 1) {
@@ -62,25 +88,110 @@ public class FeatureExtractor {
         if (cmd_args.contains("-gforce")) {
             WANT_GFORCE_DATA = true;
         }
+        if (cmd_args.contains("-fft")) {
+            WANT_FFT_FEATURES = true;
+        }
+        try {
+            this.threads = parseSharedArgs(cmd_args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            this.printHelpMessage();
+            System.exit(0);
+        }
+        if (cmd_args.contains("-filter")) {
+            int index = cmd_args.indexOf("-filter");
+            if (index + 1 >= cmd_args.size()) {
+                System.out.println("No filters provided.");
+                this.printHelpMessage();
+                System.exit(0);
+            }
+            this.setFilters(cmd_args.get(index + 1));
+            System.out.println("filtering the g-force with " +
+                    this.filter_spec);
+        }
+        if (cmd_args.contains("-wavelet")) {
+            int index = cmd_args.indexOf("-wavelet");
+            String name = "haar";
+            if (index + 1 < cmd_args.size()
+                    && !cmd_args.get(index + 1).startsWith("-")) {
+                name = cmd_args.get(index + 1);
+            }
+            this.setWavelet(name);
+            System.out.println("adding the " + name + " wavelet features");
+        }
+        if (cmd_args.contains("-stft")) {
+            this.setSpectrogram();
+            System.out.println("adding the spectrogram (stft) features");
+        }
+        if (cmd_args.contains("-cache")) {
+            this.want_cache = true;
+        }
+    }
+
+    /**
+     * Parses the options FeatureExtractor and FeaturePipeline have in
+     * common: -axes, -label, -parallel and -window. All but -parallel set
+     * the static flags of this class.
+     * @param cmd_args the command line
+     * @return number of threads, 1 without -parallel
+     * @throws IllegalArgumentException if the number of peaks of -window
+     * is less than 1
+     */
+    static int parseSharedArgs(ArrayList<String> cmd_args) {
+        if (cmd_args.contains("-axes")) {
+            WANT_AXIS_FEATURES = true;
+        }
         if (cmd_args.contains("-label")) {
             int index = cmd_args.indexOf("-label");
-            String label_type = null;
-            try {
-                label_type = cmd_args.get(index + 1);
-                if (label_type.equals("lr")) {
-                    WANT_LR_LABEL = true;
-                    System.out.println("using L/R labeling scheme");
-                } else if (label_type.equals("ud")) {
-                    WANT_UP_LABEL = true;
-                    System.out.println("using U/D labeling scheme");
-                } else if (label_type.equals("triad")) {
-                    WANT_TRIAD_LABEL = true;
-                    System.out.println("using Triad labeling scheme");
-                }
-            } catch (IndexOutOfBoundsException e) {
+            String label_type = index + 1 < cmd_args.size() ?
+                    cmd_args.get(index + 1) : "";
+            if (label_type.equals("lr")) {
+                WANT_LR_LABEL = true;
+                System.out.println("using L/R labeling scheme");
+            } else if (label_type.equals("ud")) {
+                WANT_UP_LABEL = true;
+                System.out.println("using U/D labeling scheme");
+            } else if (label_type.equals("paired")) {
+                WANT_PAIRED_LABEL = true;
+                System.out.println("using Paired labeling scheme");
+            } else if (label_type.equals("triad")) {
+                WANT_TRIAD_LABEL = true;
+                System.out.println("using Triad labeling scheme");
+            } else if (label_type.equals("septet")) {
+                WANT_SEPTET_LABEL = true;
+                System.out.println("using Septet labeling scheme");
+            } else if (label_type.equals("all")) {
+                WANT_ALL_LABELS = true;
+                System.out.println("using all the labeling schemes");
+            } else {
                 System.out.println("using default labeling scheme");
             }
         }
+        int threads = 1;
+        if (cmd_args.contains("-parallel")) {
+            int index = cmd_args.indexOf("-parallel");
+            threads = Runtime.getRuntime().availableProcessors();
+            if (index + 1 < cmd_args.size()
+                    && cmd_args.get(index + 1).matches("[0-9]+")) {
+                threads = Integer.parseInt(cmd_args.get(index + 1));
+            }
+            System.out.println("using " + threads + " threads");
+        }
+        if (cmd_args.contains("-window")) {
+            int index = cmd_args.indexOf("-window");
+            WANT_WINDOW_SIGNAL = true;
+            if (index + 1 < cmd_args.size()
+                    && cmd_args.get(index + 1).matches("[0-9]+")) {
+                WINDOW_PEAKS = Integer.parseInt(cmd_args.get(index + 1));
+            }
+            if (WINDOW_PEAKS < 1) {
+                throw new IllegalArgumentException(
+                        "The number of peaks must be at least 1.");
+            }
+            System.out.println("using the windows of the " + WINDOW_PEAKS +
+                    " largest peaks");
+        }
+        return threads;
     }
 
     private void printHelpMessage() {
@@ -93,21 +204,157 @@ public class FeatureExtractor {
         System.out.println("\t-h\t\tdisplays this message");
         System.out.println("\t-gforce\t\tgenerates gforce values in addition" +
                 " to the features");
+        System.out.println("\t-fft\t\tadds the " + ARSpectrum.NUM_FEATURES +
+                " spectral (fft) features of\n\t\t\tSpectogramFeatureWriter.R" +
+                " to the features");
+        System.out.println("\t-axes\t\tadds the statistics of the x, y " +
+                "and z values\n\t\t\tto the features");
         System.out.println("\t-label <arg>\tthe label that you want:\n\t\t\tlr "
-                + "for L/R labels,\n\t\t\tud for U/D labels,\n\t\t\ttriad for" +
-                " Triad labelling\n\t\t\t" +
-                "It defaults to 26 alphabet labelling.");
+                + "for L/R labels,\n\t\t\tud for U/D labels,\n\t\t\tpaired for" +
+                " Paired labelling,\n\t\t\ttriad for Triad labelling,\n\t\t\t" +
+                "septet for Septet labelling,\n\t\t\tall for one column per " +
+                "scheme\n\t\t\tIt defaults to 26 alphabet labelling.");
+        System.out.println("\t-window [n]\tkeeps only the readings around " +
+                "the n largest\n\t\t\tpeaks of every file, one row per " +
+                "peak\n\t\t\t(defaults to 1)");
+        System.out.println("\t-parallel [n]\tprocesses the files on n threads" +
+                "\n\t\t\t(defaults to the number of processors)");
+        System.out.println("\t-filter <spec>\tfilters the g-force values " +
+                "before the features,\n\t\t\te.g. exp:0.09,exp:0.2 " +
+                "(see FilterChain)");
+        System.out.println("\t-wavelet [name]\tadds the wavelet features " +
+                "(haar or d4,\n\t\t\tdefaults to haar)");
+        System.out.println("\t-stft\t\tadds the time-frequency features " +
+                "of the\n\t\t\tspectrogram (see Spectrogram)");
+        System.out.println("\t-cache\t\tonly processes the files that changed" +
+                " since the\n\t\t\tlast run with -cache");
+    }
+
+    /**
+     * @return description of the settings that change the feature rows
+     */
+    private String getCacheSettings() {
+        return "before=" + BEFORE_THRESH + ",after=" + AFTER_THRESH +
+                ",window=" + (WANT_WINDOW_SIGNAL ? WINDOW_PEAKS : 0) +
+                ",fft=" + WANT_FFT_FEATURES + ",filter=" + this.filter_spec +
+                ",wavelet=" + this.wavelet_name +
+                ",stft=" + (this.spectrograms != null) +
+                ",axes=" + WANT_AXIS_FEATURES;
+    }
+
+    /**
+     * Adds the wavelet features to the features of every letter.
+     * @param name "haar" or "d4"
+     */
+    public void setWavelet(String name) {
+        final int type = Wavelet.getType(name);
+        this.wavelet_name = name;
+        this.wavelets = new ThreadLocal<Wavelet>() {
+            @Override
+            protected Wavelet initialValue() {
+                return new Wavelet(type, Wavelet.DEFAULT_LEVELS);
+            }
+        };
+    }
+
+    /**
+     * Adds the time-frequency features of the spectrogram (with the default
+     * frames of Spectrogram) to the features of every letter.
+     */
+    public void setSpectrogram() {
+        this.spectrograms = new ThreadLocal<Spectrogram>() {
+            @Override
+            protected Spectrogram initialValue() {
+                return new Spectrogram();
+            }
+        };
+    }
+
+    /**
+     * Sets the columns of the rows to the statistics, then the statistics
+     * of the axes (-axes), the fft features (-fft), the wavelet features
+     * (-wavelet) and the spectrogram features (-stft).
+     */
+    private void buildSchema() {
+        FeatureSchema schema = new FeatureSchema();
+        if (WANT_AXIS_FEATURES) {
+            schema.addAxes();
+        }
+        if (WANT_FFT_FEATURES) {
+            this.fft_slot = schema.addAll("fft", ARSpectrum.NUM_FEATURES);
+        }
+        if (this.wavelets != null) {
+            this.wavelet_slot = schema.addAll(
+                    this.wavelets.get().getFeatureNames());
+        }
+        if (this.spectrograms != null) {
+            this.stft_slot = schema.addAll(
+                    this.spectrograms.get().getFeatureNames());
+        }
+        this.setSchema(schema);
+    }
+
+    /**
+     * @return the columns of the rows made by getFeatures()
+     */
+    public FeatureSchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Sets the columns of the rows made by getFeatures(), for callers that
+     * add their own features after the statistics. If the schema has the
+     * columns of FeatureSchema.addAxes(), getFeatures() fills them too.
+     * @param schema
+     */
+    public void setSchema(FeatureSchema schema) {
+        this.schema = schema;
+        this.axes_slot = schema.indexOf(
+                FeatureSchema.AXES[0] + "_" + FeatureSchema.STATS[0]);
+    }
+
+    /**
+     * Filters the g-force values of every recording, before the windowing
+     * and the features.
+     * @param spec filters, as in FilterChain.parse()
+     */
+    public void setFilters(final String spec) {
+        // fail now on a bad spec
+        FilterChain.parse(spec);
+        this.filter_spec = spec;
+        this.filters = new ThreadLocal<FilterChain>() {
+            @Override
+            protected FilterChain initialValue() {
+                return FilterChain.parse(spec);
+            }
+        };
     }
 
     public static void main(String[] args) throws IOException {
         FeatureExtractor ob = new FeatureExtractor();
         ob.parseCommandLineArgs(args);
+        ob.buildSchema();
         String path = "../../data/" + ob.inputDir;
         File directory = new File(path);
-        featuresList = new ArrayList<Features>();
-        ob.processKeyPresses(directory);
+        if (ob.want_cache) {
+            ob.cache = new FeatureCache(
+                    new File("../../data/features/" + ob.inputDir + ".cache"),
+                    ob.getCacheSettings());
+        }
+        ArrayList<Features> featuresList = null;
+        if (ob.threads > 1) {
+            featuresList = ob.processKeyPressesParallel(directory);
+        } else {
+            featuresList = new ArrayList<Features>();
+            ob.processKeyPresses(directory, featuresList);
+        }
         String featuresFile = "../../data/features/" + ob.inputDir + ".csv";
         ob.writeToFile(featuresList, featuresFile);
+        if (ob.cache != null) {
+            ob.cache.save();
+            System.out.println(ob.cache.getHits() + " files from the cache, "
+                    + ob.cache.getMisses() + " files processed");
+        }
     }
     
     /**
@@ -115,328 +362,306 @@ public class FeatureExtractor {
      * features for the letters' signals and label them correctly
      * 
      * @param directory
+     * @param featuresList the features are appended to this list
      * @throws IOException 
      */
-    private void processKeyPresses(File directory) throws IOException {
+    private void processKeyPresses(File directory,
+            ArrayList<Features> featuresList) throws IOException {
         File[] files = directory.listFiles();
-        int label = this.getLabel(directory.getName());
+        int[] labels = this.getLabels(directory.getName());
 
         for (File file: files) {
             if (file.getAbsolutePath().endsWith(".csv")) {
-                ArrayList<Signal> signals = this.readCSV(file);
-                //this.smoothGForce(signals);
-                //this.stripSignalHead(signals);
-                //this.stripSignalTail(signals);
-                if (WANT_WINDOW_SIGNAL) {
-                    signals = this.getWindowSignal(signals);
-                }
-                // write g-force's to file
-                if (WANT_GFORCE_DATA) {
-                    String filepath = file.getAbsolutePath();
-                    this.writeGForceToFile(
-                            signals,
-                            filepath.substring(0, filepath.length()-4) +
-                            ".gforce.csv"
-                            );
-                }
-                Features features = this.getFeatures(signals);
-                features.setLabel(label);
-                featuresList.add(features);
+                this.processKeyPress(file, labels, featuresList);
             } else if (file.isDirectory()) {
-                this.processKeyPresses(file);
+                this.processKeyPresses(file, featuresList);
             }
         }
     }
-    
-    private ArrayList<Signal> getWindowSignal(ArrayList<Signal> signals) {
-        moveToBaseReference(signals);
-        
-        @SuppressWarnings("unchecked")
-        ArrayList<Signal> sorted_signals = (ArrayList<Signal>) signals.clone();
-        // reverse sorted according to the absolute values of the g-force values
-        Collections.sort(sorted_signals, new Comparator<Signal>() {
-            public int compare(Signal signal1, Signal signal2) {
-                double force1 = Math.abs(signal1.getGForce());
-                double force2 = Math.abs(signal2.getGForce());
-                double diff = force1 - force2;
-                return -(int)Math.signum(diff);
-            }
-        });
-        int max_index = signals.indexOf(sorted_signals.get(0));
-        ArrayList<Signal> letter = this.removeAroundMax(signals, max_index);
-        return letter;
-    }
-    
-    private ArrayList<Signal> shiftRelativeToOrigin(ArrayList<Signal> signals) {
-        BigInteger start_time = signals.get(0).getTimeStamp();
-        ArrayList<Signal> new_signals = new ArrayList<Signal>();
-        for(Signal signal : signals) {
-            BigInteger new_timestamp =
-                    signal.getTimeStamp().subtract(start_time);
-            Signal new_signal = new Signal(new_timestamp,
-                    signal.getX(), signal.getY(), signal.getZ());
-            new_signals.add(new_signal);
-        }
-        return new_signals;
+
+    /**
+     * Same as processKeyPresses, but the directories and files are
+     * processed as tasks of a ForkJoinPool. The features are collected in
+     * the order in which processKeyPresses would have found them.
+     * 
+     * @param directory
+     * @return features of all the key presses under the directory
+     * @throws IOException
+     */
+    private ArrayList<Features> processKeyPressesParallel(File directory)
+            throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            return pool.invoke(new KeyPressesTask(directory, null));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
     }
-    
-    public static void moveToBaseReference(ArrayList<Signal> signals) {
-        double sum = 0;
-        for (int i = 0; i < signals.size(); i++) {
-            sum += signals.get(i).getGForce();
+
+    private class KeyPressesTask extends RecursiveTask<ArrayList<Features>> {
+        private static final long serialVersionUID = 1L;
+        private File file;
+        private int[] labels;
+
+        KeyPressesTask(File file, int[] labels) {
+            this.file = file;
+            this.labels = labels;
         }
-        double mean = sum/signals.size();
-        for (Signal signal : signals) {
-            signal.setGForce(signal.getGForce() - mean);
+
+        @Override
+        protected ArrayList<Features> compute() {
+            ArrayList<Features> featuresList = new ArrayList<Features>();
+            if (this.file.getAbsolutePath().endsWith(".csv")) {
+                try {
+                    processKeyPress(this.file, this.labels, featuresList);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return featuresList;
+            }
+            File[] files = this.file.listFiles();
+            int[] labels = getLabels(this.file.getName());
+            ArrayList<KeyPressesTask> tasks = new ArrayList<KeyPressesTask>();
+            for (File file : files) {
+                if (file.getAbsolutePath().endsWith(".csv")
+                        || file.isDirectory()) {
+                    tasks.add(new KeyPressesTask(file, labels));
+                }
+            }
+            invokeAll(tasks);
+            for (KeyPressesTask task : tasks) {
+                featuresList.addAll(task.join());
+            }
+            return featuresList;
         }
     }
 
-    private ArrayList<Signal> removeAroundMax(ArrayList<Signal> signals,
-            int max_index){
-        BigInteger peak_time_stamp = signals.get(max_index).getTimeStamp();
-        
-        // letter start index
-        int start_cut_off_index = 0;
-        for (int i = max_index; i >= 0; i--) {
-            BigInteger diff = signals.get(i).getTimeStamp().subtract(
-                    peak_time_stamp).abs();
-            start_cut_off_index = i;
-            if (diff.compareTo(BEFORE_THRESH) > 0) {
-                break;
+    /**
+     * Extracts the features of a single key press file. With
+     * WANT_WINDOW_SIGNAL, every one of the WINDOW_PEAKS windows of the file
+     * gives a row.
+     * 
+     * @param file csv file of the key press
+     * @param labels labels of the key press
+     * @param featuresList the labeled features are appended to this list
+     * @throws IOException
+     */
+    private void processKeyPress(File file, int[] labels,
+            ArrayList<Features> featuresList) throws IOException {
+        String key = null;
+        // the gforce files are only written when the file is processed
+        if (this.cache != null) {
+            key = this.cache.getKey(file);
+            ArrayList<Features> cached = WANT_GFORCE_DATA ? null :
+                this.cache.get(key, this.schema);
+            if (cached != null) {
+                for (Features features : cached) {
+                    this.setLabels(features, labels);
+                }
+                featuresList.addAll(cached);
+                return;
             }
         }
-        
-        // letter end index
-        int end_cut_off_index = 0;
-        for (int i = max_index; i < signals.size(); i++) {
-            BigInteger diff = signals.get(i).getTimeStamp().subtract(
-                    peak_time_stamp).abs(); 
-            end_cut_off_index = i;
-            if (diff.compareTo(AFTER_THRESH) > 0) {
-                break;
+        ArrayList<Features> rows = new ArrayList<Features>();
+        SignalBuffer signals = this.readCSV(file);
+        if (this.filters != null) {
+            this.filters.get().apply(signals);
+        }
+        //signals = this.stripSignalHead(signals);
+        //this.stripSignalTail(signals);
+        ArrayList<SignalBuffer> letters = null;
+        if (WANT_WINDOW_SIGNAL) {
+            letters = this.getWindowSignals(signals, WINDOW_PEAKS);
+        } else {
+            letters = new ArrayList<SignalBuffer>();
+            letters.add(signals);
+        }
+        String filepath = file.getAbsolutePath();
+        filepath = filepath.substring(0, filepath.length()-4);
+        for (int i = 0; i < letters.size(); i++) {
+            SignalBuffer letter = letters.get(i);
+            // write g-force's to file
+            if (WANT_GFORCE_DATA) {
+                this.writeGForceToFile(letter,
+                        filepath + (i == 0 ? "" : "_" + i) + ".gforce.csv");
+            }
+            Features features = this.getFeatures(letter);
+            if (this.fft_slot >= 0) {
+                this.spectrum.compute(letter, features.getValues(),
+                        this.fft_slot);
+            }
+            if (this.wavelet_slot >= 0) {
+                this.wavelets.get().compute(letter, features.getValues(),
+                        this.wavelet_slot);
             }
+            if (this.stft_slot >= 0) {
+                this.spectrograms.get().compute(letter, features.getValues(),
+                        this.stft_slot);
+            }
+            rows.add(features);
         }
-        
-        ArrayList<Signal> letter_signal = new ArrayList<Signal>();
-        for (int i = start_cut_off_index; i <= end_cut_off_index; i++) {
-            letter_signal.add(signals.get(i));
+        if (this.cache != null) {
+            this.cache.put(key, rows);
+        }
+        for (Features features : rows) {
+            this.setLabels(features, labels);
         }
+        featuresList.addAll(rows);
+    }
+    
+    public SignalBuffer getWindowSignal(SignalBuffer signals) {
+        moveToBaseReference(signals);
+        return this.removeAroundMax(signals, this.maxIndex(signals));
+    }
 
-        return letter_signal;
+    /**
+     * Windows around the largest peaks of a recording with several key
+     * presses. A peak inside the window of a larger one is skipped, as in
+     * WordFeatureExtractor.
+     * 
+     * @param signals
+     * @param max_peaks number of windows wanted
+     * @return at most max_peaks windows, in time order
+     */
+    public ArrayList<SignalBuffer> getWindowSignals(SignalBuffer signals,
+            int max_peaks) {
+        if (max_peaks == 1) {
+            ArrayList<SignalBuffer> letters = new ArrayList<SignalBuffer>();
+            letters.add(this.getWindowSignal(signals));
+            return letters;
+        }
+        moveToBaseReference(signals);
+        KeystrokeSegmenter segmenter = new KeystrokeSegmenter(
+                BEFORE_THRESH, AFTER_THRESH, 0);
+        segmenter.setMaxPeaks(max_peaks);
+        return segmenter.segment(signals, 0);
     }
 
-    private void stripSignalHead(ArrayList<Signal> signals) {
+    /**
+     * @return index of the reading with the largest absolute g-force value;
+     * the first one wins on ties
+     */
+    private int maxIndex(SignalBuffer signals) {
+        int max_index = 0;
+        double max_gforce = Math.abs(signals.getGForce(0));
+        for (int i = 1; i < signals.size(); i++) {
+            double gforce = Math.abs(signals.getGForce(i));
+            if (gforce > max_gforce) {
+                max_index = i;
+                max_gforce = gforce;
+            }
+        }
+        return max_index;
+    }
+    
+    private SignalBuffer shiftRelativeToOrigin(SignalBuffer signals) {
+        return signals.shiftRelativeToOrigin();
+    }
+    
+    public static double meanGForce(SignalBuffer signals) {
+        return signals.sumGForce()/signals.size();
+    }
+    
+    public static void moveToBaseReference(SignalBuffer signals) {
+        signals.subtractGForce(meanGForce(signals));
+    }
+
+    private SignalBuffer removeAroundMax(SignalBuffer signals,
+            int max_index){
+        // the first reading beyond each threshold is kept, the bounds are
+        // found by binary search on the timestamps
+        KeystrokeSegmenter segmenter = new KeystrokeSegmenter(
+                BEFORE_THRESH, AFTER_THRESH, 0);
+        int start_cut_off_index = segmenter.getWindowStart(signals, max_index);
+        int end_cut_off_index = segmenter.getWindowEnd(signals, max_index);
+        return signals.slice(start_cut_off_index, end_cut_off_index + 1);
+    }
+
+    private SignalBuffer stripSignalHead(SignalBuffer signals) {
         int max_index = 0;
         int min_index = 0;
         for(int i = 0; i < signals.size(); i++){
-            Signal signal = signals.get(i);
-            if (signal.getGForce() > signals.get(max_index).getGForce()) {
+            double gforce = signals.getGForce(i);
+            if (gforce > signals.getGForce(max_index)) {
                 max_index = i;
             }
-            if (signal.getGForce() < signals.get(min_index).getGForce()) {
+            if (gforce < signals.getGForce(min_index)) {
                 min_index = i;
             }
         }
         int peak_index = Math.min(max_index, min_index);
-        BigInteger peak_timestamp = signals.get(peak_index).getTimeStamp();
-        BigInteger threshold = new BigInteger("500000"); // 500ms
+        long peak_timestamp = signals.getTimeStamp(peak_index);
+        long threshold = 500000; // 500ms
         int cut_off_index = 0;
         for (int i = peak_index; i >= 0; i--) {
-            BigInteger diff = signals.get(i).getTimeStamp().subtract(
-                    peak_timestamp).abs(); 
-            if (diff.compareTo(threshold) > 0) {
+            long diff = Math.abs(signals.getTimeStamp(i) - peak_timestamp);
+            if (diff > threshold) {
                 cut_off_index = i;
                 break;
             }
         }
-        for (int i = cut_off_index; i >= 0; i--) {
-            signals.remove(i);
-        }
+        return signals.slice(cut_off_index + 1, signals.size());
     }
     
-    private void stripSignalTail(ArrayList<Signal> signals) {
+    private void stripSignalTail(SignalBuffer signals) {
         double sum = 0;
         int n = 100;
         for (int i = signals.size()-n; i < signals.size(); i++) {
-            sum += signals.get(i).getGForce();
+            sum += signals.getGForce(i);
         }
         double mean = sum / n;
         double sq_diff_sum = 0;
         for (int i = signals.size()-n; i < signals.size(); i++) {
-            sq_diff_sum += Math.pow(signals.get(i).getGForce()-mean,2);
+            sq_diff_sum += Math.pow(signals.getGForce(i)-mean,2);
         }
         double std_dev = Math.sqrt(sq_diff_sum/n);
         System.out.println("Mean = " + mean + "\nStd-dev = " + std_dev);
     }
     
-    private int getLabel(String dirName) {
+    public int getLabel(String dirName) {
         if (WANT_LR_LABEL) {
-            if (dirName.equals("enter") || dirName.equals("space")) {
-                return 0;
-            }
-            return this.getLRLabel(dirName.charAt(0));
+            return LabelSchemes.getLabel(LabelSchemes.LR, dirName);
         }
         if (WANT_UP_LABEL) {
-            if (dirName.equals("enter") || dirName.equals("space")) {
-                return 0;
-            }
-            return this.getUDLabel(dirName.charAt(0));
+            return LabelSchemes.getLabel(LabelSchemes.UD, dirName);
         }
         if (WANT_PAIRED_LABEL) {
-            if (dirName.equals("enter") || dirName.equals("space")) {
-                return 0;
-            }
-            return this.getPairedLabel(dirName.charAt(0));
+            return LabelSchemes.getLabel(LabelSchemes.PAIRED, dirName);
         }
         if (WANT_TRIAD_LABEL) {
-            if (dirName.equals("enter") || dirName.equals("space")) {
-                return 0;
-            }
-            return this.getTriadLabel(dirName.charAt(0));
+            return LabelSchemes.getLabel(LabelSchemes.TRIAD, dirName);
         }
         if (WANT_SEPTET_LABEL) {
-            if (dirName.equals("enter") || dirName.equals("space")) {
-                return 0;
-            }
-            return this.getSeptetLabel(dirName.charAt(0));
+            return LabelSchemes.getLabel(LabelSchemes.SEPTET, dirName);
         }
-        if (dirName.equals("enter")) {
-            return 27;
-        } else if (dirName.equals("space")) {
-            return 28;
-        }
-        char letter = dirName.toLowerCase().charAt(0);
-        return (letter - 'a' + 1);
+        return LabelSchemes.getLabel(LabelSchemes.LETTER, dirName);
     }
-    
-    private int getSeptetLabel(char ch) {
-        switch(ch) {
-        case 'q':
-        case 'w':
-        case 'e':
-        case 'a':
-        case 's':
-        case 'z':
-        case 'x': return 1;
-        case 'r':
-        case 't':
-        case 'd':
-        case 'f':
-        case 'g':
-        case 'c':
-        case 'v': return 2;
-        case 'y':
-        case 'u':
-        case 'h':
-        case 'j':
-        case 'b':
-        case 'n': return 3;
-        case 'i':
-        case 'o':
-        case 'p':
-        case 'k':
-        case 'l':
-        case 'm': return 4;
-        }
-        return 0;
-    }
-
-    private int getTriadLabel(char ch) {
-        switch(ch) {
-        case 'q':
-        case 'a':
-        case 'w': return 1;
-        case 'z':
-        case 's':
-        case 'x': return 2;
-        case 'e':
-        case 'd':
-        case 'r': return 3;
-        case 'f':
-        case 'c':
-        case 'v': return 4;
-        case 't':
-        case 'g':
-        case 'y': return 5;
-        case 'h':
-        case 'b':
-        case 'n': return 6;
-        case 'u':
-        case 'j':
-        case 'i': return 7;
-        case 'o':
-        case 'l':
-        case 'p': return 8;
-        case 'k':
-        case 'm': return 9;
-        }
-        return 0;
-    }
-
-    private int getPairedLabel(char ch) {
-        switch(ch) {
-        case 'q':
-        case 'w': return 1;
-        case 'e':
-        case 'r': return 2;
-        case 't':
-        case 'y': return 3;
-        case 'u':
-        case 'i': return 4;
-        case 'o':
-        case 'p': return 5;
-        case 'a':
-        case 's': return 6;
-        case 'd':
-        case 'f': return 7;
-        case 'g':
-        case 'b': return 8;
-        case 'z':
-        case 'x': return 9;
-        case 'c':
-        case 'v': return 10;
-        case 'h':
-        case 'j': return 11;
-        case 'k':
-        case 'l': return 12;
-        case 'n':
-        case 'm': return 13;
-        }
-        return 0;
-    }
-
-    private int getLRLabel(char ch) {
-        char[] left = {'a','b','c','d','e','f','g','q',
-                        'r','s','t','v','w','x','z'};
-        char[] right = {'h','i','j','k','l','m','n','o','p','u','y'};
-        for (int i = 0; i < left.length; i++) {
-            if (left[i] == ch) {
-                return 1;   // L
-            }
-        }
-        for (int i = 0; i < right.length; i++) {
-            if (right[i] == ch) {
-                return 2;   // R
-            }
+
+    /**
+     * @param dirName
+     * @return the label of every scheme with WANT_ALL_LABELS, otherwise
+     * the label of getLabel()
+     */
+    public int[] getLabels(String dirName) {
+        if (WANT_ALL_LABELS) {
+            return LabelSchemes.getLabels(dirName);
         }
-        return 0;
+        return new int[] {this.getLabel(dirName)};
     }
 
-    private int getUDLabel(char ch) {
-        char[] up = {'q','w','e','r','t','y','u','i','o','p'};
-        char[] down = {'a','s','d','f','g','h','j','k','l','z','x','c','v',
-                        'b','n','m'};
-        for (int i = 0; i < up.length; i++) {
-            if (up[i] == ch) {
-                return 1;   // U
-            }
-        }
-        for (int i = 0; i < down.length; i++) {
-            if (down[i] == ch) {
-                return 2;   // D
-            }
+    /**
+     * Sets the labels returned by getLabels().
+     * @param features
+     * @param labels
+     */
+    public void setLabels(Features features, int[] labels) {
+        if (labels.length == 1) {
+            features.setLabel(labels[0]);
+        } else {
+            features.setLabels(labels);
         }
-        return 0;
     }
 
     /**
@@ -445,15 +670,14 @@ public class FeatureExtractor {
      * @param filename
      * @throws IOException
      */
-    public void writeGForceToFile(ArrayList<Signal> signals,
+    public void writeGForceToFile(SignalBuffer signals,
             String filename) throws IOException {
         
         PrintWriter pw = new PrintWriter(
                 new BufferedWriter(new FileWriter(filename)));
         pw.println("timestamp, gforce");
-        for(Iterator<Signal> iter = signals.iterator(); iter.hasNext();){
-            Signal row = iter.next();
-            pw.println(row.getTimeStamp().toString() + "," + row.getGForce());
+        for (int i = 0; i < signals.size(); i++) {
+            pw.println(signals.getTimeStamp(i) + "," + signals.getGForce(i));
         }
         pw.close();
     }
@@ -467,179 +691,94 @@ public class FeatureExtractor {
      */
     private void writeToFile(ArrayList<Features> featuresList,
             String datafile) throws IOException {
-        
-        PrintWriter pw = new PrintWriter(
-                new BufferedWriter(new FileWriter(datafile)));
-        pw.println(Features.getFeaturesName());
+        FeatureWriter writer = new FeatureWriter(new File(datafile));
+        writer.writeHeader(this.schema,
+                WANT_ALL_LABELS ? LabelSchemes.NAMES : null);
         for(Iterator<Features> iter = featuresList.iterator(); iter.hasNext();){
-            pw.println(iter.next().toString());
+            writer.write(iter.next(), true);
         }
-        pw.close();
+        writer.close();
         System.out.println("writing "+datafile);
     }
 
-    public Features getFeatures(ArrayList<Signal> signals) {
-        Features features = new Features();
-        features.setMin(this.feature_min(signals));
-        features.setMax(this.feature_max(signals));
-        features.setMean(this.feature_mean(signals));
-        features.setVariance(this.feature_variance(signals));
-        features.setRms(this.feature_rms(signals));
-        features.setSkewness(this.feature_skewness(signals));
-        features.setKurtosis(this.feature_kurtosis(signals));
-        return features;
-    }
-
-    /**
-     * Reads the csv file and outputs the Signal computation for
-     * each row of data
-     * 
-     * @param file csv file to read the data from 
-     * @param datafile name of the output .data.csv file
-     * @throws IOException
-     * @return ArrayList of Signals from the file
-     * @throws FileNotFoundException 
-     */
-    public ArrayList<Signal> readCSV(File file)
-            throws FileNotFoundException {
-        Scanner ob = new Scanner(file);
-        BigInteger start_time = null;
-        ArrayList<Signal> signals = new ArrayList<Signal>();
-        
-        while(ob.hasNextLine()) {
-            StringTokenizer data = new StringTokenizer(ob.nextLine(), ",");
-            BigInteger time = new BigInteger(data.nextToken());
-            if (start_time == null) {
-                start_time = time;
-                time = BigInteger.ZERO;
-            } else {
-                // convert time passed to micro-second
-                time = time.subtract(start_time).divide(FACTOR);
-            }
-            double x = Double.parseDouble(data.nextToken());
-            double y = Double.parseDouble(data.nextToken());
-            double z = Double.parseDouble(data.nextToken());
-            signals.add(new Signal(time, x, y, z));
-        }
-        ob.close();
-        return signals;
-    }
-    
     /**
-     * Computes the minimum GForce recorded by the accelerometer for the
-     * given key presses readings. 
+     * Computes the features of the g-force values in a single pass over
+     * the signals.
      * @param signals
-     * @return minimum g-force recorded
+     * @return features of the signals, not labeled yet
      */
-    private double feature_min(ArrayList<Signal> signals) {
-        double minGForce = Double.MAX_VALUE;
-        for (Iterator<Signal> iter = signals.iterator(); iter.hasNext();) {
-            Signal signal = iter.next();
-            minGForce = Math.min(signal.getGForce(), minGForce);
-        }
-        return minGForce;
+    public Features getFeatures(SignalBuffer signals) {
+        if (this.axes_slot >= 0) {
+            return this.getAxisFeatures(signals);
+        }
+        Moments moments = this.moments.get();
+        moments.reset();
+        moments.addGForces(signals);
+        return this.getFeatures(moments);
     }
 
     /**
-     * Computes the maximum GForce recorded by the accelerometer for the
-     * given key presses readings. 
-     * @param signals
-     * @return maximum g-force recorded
+     * The statistics of the g-force and of the x, y and z values, all
+     * accumulated in one pass over the columns of the signals.
      */
-    private double feature_max(ArrayList<Signal> signals) {
-        double minGForce = Double.MIN_VALUE;
-        for (Iterator<Signal> iter = signals.iterator(); iter.hasNext();) {
-            Signal signal = iter.next();
-            minGForce = Math.max(signal.getGForce(), minGForce);
+    private Features getAxisFeatures(SignalBuffer signals) {
+        Moments[] axes = new Moments[FeatureSchema.AXES.length];
+        for (int a = 0; a < axes.length; a++) {
+            axes[a] = new Moments();
+        }
+        Moments gforce = new Moments();
+        Moments.addAxes(signals, axes[0], axes[1], axes[2], gforce);
+        Features features = this.getFeatures(gforce);
+        for (int a = 0; a < axes.length; a++) {
+            setStats(axes[a], features,
+                    this.axes_slot + a * FeatureSchema.STATS.length);
         }
-        return minGForce;
+        return features;
     }
 
-    private double feature_mean(ArrayList<Signal> signals){
-      double sum = 0;
-      int size = signals.size();
-      
-      for(int i = 0; i < size; i++){
-        sum = sum + (signals.get(i)).getGForce();
-      }
-
-      double mean = sum/size;
-      return mean;
+    public Features getFeatures(Moments moments) {
+        Features features = this.schema.newFeatures();
+        this.getFeatures(moments, features);
+        return features;
     }
 
-    private double feature_variance(ArrayList<Signal> signals){
-      double mean = feature_mean(signals);
-      double sum = 0;
-      int size = signals.size();
-
-      for(int i = 0; i<size; i++){
-        sum = sum + Math.pow(((signals.get(i)).getGForce() - mean), 2);
-      }
-      
-      double variance = sum/size;
-      return variance;
-    }
-    
-    private double feature_rms(ArrayList<Signal> signals){
-      double sum = 0;
-      int size = signals.size();
-      
-      for(int i = 0; i<size; i++){
-        sum = sum + Math.pow((signals.get(i)).getGForce(), 2);
-      } 
-      
-      double square_mean = sum/size;
-      double sqrt = Math.sqrt(square_mean);
-      return sqrt;
+    /**
+     * Writes the statistics into a row, e.g. a row that is reused.
+     * @param moments
+     * @param features row of any schema; only the statistics are set
+     */
+    public void getFeatures(Moments moments, Features features) {
+        setStats(moments, features, 0);
+        // the max feature has always been computed starting from
+        // Double.MIN_VALUE; keep it that way so it matches the trained models
+        features.setMax(Math.max(moments.getMax(), Double.MIN_VALUE));
     }
 
     /**
-     * Skewness is a measure of the asymmetry of our signal.
-     * A positive skew means that the right tail is longer
-     * and a negative skew means that the left tail is longer.
-     *
-     * @param signals
-     * @return
+     * Writes the statistics into the slots from slot on, in the order of
+     * FeatureSchema.STATS.
      */
-    private double feature_skewness(ArrayList<Signal> signals) {
-        double mean = feature_mean(signals);
-        double variance = feature_variance(signals);
-        double sum = 0;
-        for (Signal s : signals) {
-            sum += Math.pow(s.getGForce() - mean, 3); 
-        }
-        double skewness = sum 
-                / (signals.size() - 1)
-                / Math.pow(variance, 1.5);
-        return skewness;
+    private static void setStats(Moments moments, Features features,
+            int slot) {
+        features.set(slot + FeatureSchema.MEAN, moments.getMean());
+        features.set(slot + FeatureSchema.SKEWNESS, moments.getSkewness());
+        features.set(slot + FeatureSchema.KURTOSIS, moments.getKurtosis());
+        features.set(slot + FeatureSchema.VARIANCE, moments.getVariance());
+        features.set(slot + FeatureSchema.MIN, moments.getMin());
+        features.set(slot + FeatureSchema.MAX, moments.getMax());
+        features.set(slot + FeatureSchema.RMS, moments.getRms());
     }
 
-
     /**
-     * Kurtosis is a measure of whether the data are peaked or flat relative
-     * to a normal distribution. That is, data sets with high kurtosis tend to
-     * have a distinct peak near the mean, decline rather rapidly, and have
-     * heavy tails. Data sets with low kurtosis tend to have a flat top near
-     * the mean rather than a sharp peak. A uniform distribution would be the
-     * extreme case.
+     * Reads the csv file and outputs the Signal computation for
+     * each row of data
      * 
-     * src: http://itl.nist.gov/div898/handbook/eda/section3/eda35b.htm
-     * @param signals
-     * @return
+     * @param file csv file to read the data from 
+     * @return SignalBuffer holding the readings of the file
+     * @throws IOException
      */
-    private double feature_kurtosis(ArrayList<Signal> signals){
-        double mean = feature_mean(signals);
-        double variance = feature_variance(signals);
-        
-        double quad_sum = 0;
-        for (Iterator<Signal> iter = signals.iterator(); iter.hasNext();) {
-            quad_sum = quad_sum + Math.pow(iter.next().getGForce() - mean, 4);
-        }
-        
-        double kurtosis = quad_sum
-                          / (signals.size() - 1)
-                          / (variance * variance);
-        return kurtosis;
-      }
+    public SignalBuffer readCSV(File file) throws IOException {
+        return new SignalCSVReader().read(file);
+    }
 
 }
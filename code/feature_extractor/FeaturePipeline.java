@@ -0,0 +1,264 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the labeled features file of a directory of letter recordings
+ * (data/features/<dir-name>-labeled.csv) in a single process.
+ *
+ * It replaces running get-nonfft-features.sh, SpectogramFeatureWriter.R and
+ * combine_features.sh one after the other. Every recording goes through
+ * the stages in memory: read, window (with -window), statistics, spectrum,
+ * spectrogram (with -stft) and label. No gforce or temporary files are
+ * written.
+ *
+ * Each row is keyed by the path of its recording relative to the input
+ * directory ("a/a_111.csv"), and the rows are written in key order; the
+ * windows of a recording (-window n) are written in time order. The
+ * statistics, the spectrum and the label of a row always come from the
+ * same recording, instead of being pasted together by line number, and the
+ * output does not depend on the order in which the file system lists the
+ * files.
+ */
+public class FeaturePipeline {
+
+    private String inputDir = null;
+    private String outputFile = null;
+    private int threads = 1;
+    private FeatureExtractor extractor = new FeatureExtractor();
+    private ARSpectrum spectrum = new ARSpectrum();
+    private int fft_slot;
+    // every thread has its own spectrogram (-stft), -1 without it
+    private ThreadLocal<Spectrogram> spectrograms = null;
+    private int stft_slot = -1;
+
+    /**
+     * Sets the columns of the rows: the statistics, the statistics of the
+     * axes (-axes), the spectrum and the spectrogram features (-stft).
+     */
+    private void buildSchema() {
+        FeatureSchema schema = new FeatureSchema();
+        if (FeatureExtractor.WANT_AXIS_FEATURES) {
+            schema.addAxes();
+        }
+        this.fft_slot = schema.addAll("fft", ARSpectrum.NUM_FEATURES);
+        if (this.spectrograms != null) {
+            this.stft_slot = schema.addAll(
+                    this.spectrograms.get().getFeatureNames());
+        }
+        this.extractor.setSchema(schema);
+    }
+
+    private void parseCommandLineArgs(String[] args) {
+        ArrayList<String> cmd_args = new ArrayList<String>(Arrays.asList(args));
+        if (cmd_args.contains("-h") || !cmd_args.contains("-d")) {
+            this.printHelpMessage();
+            System.exit(0);
+        }
+        int index = cmd_args.indexOf("-d");
+        if (index + 1 >= cmd_args.size()) {
+            System.out.println("No directory name provided.");
+            this.printHelpMessage();
+            System.exit(0);
+        }
+        this.inputDir = cmd_args.get(index + 1);
+        File dir = new File("../../data/" + this.inputDir);
+        if (!dir.exists() || !dir.isDirectory()) {
+            System.out.println(this.inputDir + " is not a directory.");
+            System.exit(0);
+        }
+        this.outputFile = "../../data/features/" + this.inputDir +
+                "-labeled.csv";
+        if (cmd_args.contains("-o")) {
+            this.outputFile = cmd_args.get(cmd_args.indexOf("-o") + 1);
+        }
+        try {
+            this.threads = FeatureExtractor.parseSharedArgs(cmd_args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            this.printHelpMessage();
+            System.exit(0);
+        }
+        if (cmd_args.contains("-stft")) {
+            this.spectrograms = new ThreadLocal<Spectrogram>() {
+                @Override
+                protected Spectrogram initialValue() {
+                    return new Spectrogram();
+                }
+            };
+            System.out.println("adding the spectrogram (stft) features");
+        }
+    }
+
+    private void printHelpMessage() {
+        System.out.println("Usage: java FeaturePipeline -d <dir-name>");
+        System.out.println("Example: java FeaturePipeline -d all-letters");
+        System.out.println("Arguments:\n");
+        System.out.println("\t-d <dir-name>\tthe directory (in ../data/) which "
+                +"you want to process");
+        System.out.println("\t-h\t\tdisplays this message");
+        System.out.println("\t-o <file>\tthe output file, defaults to\n\t\t\t" +
+                "../../data/features/<dir-name>-labeled.csv");
+        System.out.println("\t-axes\t\tadds the statistics of the x, y " +
+                "and z values\n\t\t\tto the features");
+        System.out.println("\t-label <arg>\tthe label that you want:\n\t\t\tlr "
+                + "for L/R labels,\n\t\t\tud for U/D labels,\n\t\t\tpaired for" +
+                " Paired labelling,\n\t\t\ttriad for Triad labelling,\n\t\t\t" +
+                "septet for Septet labelling,\n\t\t\tall for one column per " +
+                "scheme\n\t\t\tIt defaults to 26 alphabet labelling.");
+        System.out.println("\t-window [n]\tkeeps only the readings around " +
+                "the n largest\n\t\t\tpeaks of every file, one row per " +
+                "peak\n\t\t\t(defaults to 1)");
+        System.out.println("\t-parallel [n]\tprocesses the files on n threads" +
+                "\n\t\t\t(defaults to the number of processors)");
+        System.out.println("\t-stft\t\tadds the time-frequency features " +
+                "of the\n\t\t\tspectrogram (see Spectrogram)");
+    }
+
+    public static void main(String[] args) throws IOException {
+        FeaturePipeline ob = new FeaturePipeline();
+        ob.parseCommandLineArgs(args);
+        ob.buildSchema();
+        File directory = new File("../../data/" + ob.inputDir);
+        TreeMap<String, File> recordings = new TreeMap<String, File>();
+        findRecordings(directory, "", recordings);
+        System.out.println(recordings.size() + " recordings found");
+        TreeMap<String, ArrayList<Features>> rows =
+                ob.extractAll(recordings);
+        ob.writeToFile(rows, ob.outputFile);
+    }
+
+    /**
+     * Recursively collects the recordings (csv files) under the directory,
+     * keyed by their path relative to the input directory.
+     *
+     * @param directory
+     * @param prefix key prefix of the files in this directory
+     * @param recordings the recordings are added to this map
+     */
+    public static void findRecordings(File directory, String prefix,
+            TreeMap<String, File> recordings) {
+        File[] files = directory.listFiles();
+        for (File file : files) {
+            if (file.getName().endsWith(".gforce.csv")) {
+                // left over from get-nonfft-features.sh
+                continue;
+            }
+            if (file.getName().endsWith(".csv")) {
+                recordings.put(prefix + file.getName(), file);
+            } else if (file.isDirectory()) {
+                findRecordings(file, prefix + file.getName() + "/",
+                        recordings);
+            }
+        }
+    }
+
+    /**
+     * Runs all the stages for every recording.
+     *
+     * @param recordings
+     * @return labeled features of every recording, by key
+     * @throws IOException
+     */
+    private TreeMap<String, ArrayList<Features>> extractAll(
+            TreeMap<String, File> recordings) throws IOException {
+        TreeMap<String, ArrayList<Features>> rows =
+                new TreeMap<String, ArrayList<Features>>();
+        if (this.threads <= 1) {
+            for (Map.Entry<String, File> entry : recordings.entrySet()) {
+                rows.put(entry.getKey(), this.extract(entry.getValue()));
+            }
+            return rows;
+        }
+
+        ArrayList<String> keys = new ArrayList<String>();
+        ArrayList<Callable<ArrayList<Features>>> tasks =
+                new ArrayList<Callable<ArrayList<Features>>>();
+        for (Map.Entry<String, File> entry : recordings.entrySet()) {
+            final File file = entry.getValue();
+            keys.add(entry.getKey());
+            tasks.add(new Callable<ArrayList<Features>>() {
+                public ArrayList<Features> call() throws IOException {
+                    return extract(file);
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            List<Future<ArrayList<Features>>> results =
+                    pool.invokeAll(tasks);
+            for (int i = 0; i < keys.size(); i++) {
+                rows.put(keys.get(i), results.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return rows;
+    }
+
+    /**
+     * Read, window, statistics, spectrum, spectrogram and label stages for
+     * one recording.
+     *
+     * @param file csv file of the recording
+     * @return labeled features of the recording, one row per window with
+     * -window
+     * @throws IOException
+     */
+    private ArrayList<Features> extract(File file) throws IOException {
+        SignalBuffer signals = this.extractor.readCSV(file);
+        ArrayList<SignalBuffer> letters = null;
+        if (FeatureExtractor.WANT_WINDOW_SIGNAL) {
+            letters = this.extractor.getWindowSignals(signals,
+                    FeatureExtractor.WINDOW_PEAKS);
+        } else {
+            letters = new ArrayList<SignalBuffer>();
+            letters.add(signals);
+        }
+        int[] labels = this.extractor.getLabels(
+                file.getParentFile().getName());
+        ArrayList<Features> rows = new ArrayList<Features>();
+        for (SignalBuffer letter : letters) {
+            Features features = this.extractor.getFeatures(letter);
+            this.spectrum.compute(letter, features.getValues(),
+                    this.fft_slot);
+            if (this.stft_slot >= 0) {
+                this.spectrograms.get().compute(letter, features.getValues(),
+                        this.stft_slot);
+            }
+            this.extractor.setLabels(features, labels);
+            rows.add(features);
+        }
+        return rows;
+    }
+
+    private void writeToFile(TreeMap<String, ArrayList<Features>> rows,
+            String datafile) throws IOException {
+        FeatureWriter writer = new FeatureWriter(new File(datafile));
+        writer.writeHeader(this.extractor.getSchema(),
+                FeatureExtractor.WANT_ALL_LABELS ? LabelSchemes.NAMES : null);
+        for (ArrayList<Features> recording : rows.values()) {
+            for (Features features : recording) {
+                writer.write(features, true);
+            }
+        }
+        writer.close();
+        System.out.println("combined features file written to.... " +
+                datafile);
+    }
+}
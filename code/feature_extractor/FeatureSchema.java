@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * The columns of a features file, in order.
+ *
+ * Every schema starts with the seven statistics (mean, skewness, kurtosis,
+ * variance, min, max and rms, at the slots MEAN..RMS), and the extractors
+ * add the columns of their features after them (fft1..fftn, the wavelet
+ * features, ...). add() returns the slot of the new column, which is the
+ * index the extractor writes to in the double[] of every row. The
+ * statistics of the x, y and z axes (addAxes()) are named x_mean,
+ * x_skewness, ..., z_rms.
+ *
+ * The columns are fixed once the first row of the schema is made, so all
+ * the rows of a schema have the same length. A schema can be shared
+ * between threads after that.
+ */
+public class FeatureSchema {
+    public static final int MEAN = 0;
+    public static final int SKEWNESS = 1;
+    public static final int KURTOSIS = 2;
+    public static final int VARIANCE = 3;
+    public static final int MIN = 4;
+    public static final int MAX = 5;
+    public static final int RMS = 6;
+    public static final String[] STATS = {
+        "mean", "skewness", "kurtosis", "variance", "min", "max", "rms"
+    };
+    public static final String[] AXES = {"x", "y", "z"};
+
+    /** The statistics only. */
+    public static final FeatureSchema DEFAULT = new FeatureSchema().fix();
+
+    private ArrayList<String> names = new ArrayList<String>();
+    private HashMap<String, Integer> slots = new HashMap<String, Integer>();
+    private boolean fixed = false;
+
+    public FeatureSchema() {
+        this.addAll(STATS);
+    }
+
+    /**
+     * Adds a column.
+     * @param name
+     * @return slot of the column
+     */
+    public int add(String name) {
+        if (this.fixed) {
+            throw new IllegalStateException(
+                    "the columns are fixed once rows are made");
+        }
+        if (this.slots.containsKey(name)) {
+            throw new IllegalArgumentException("duplicate column: " + name);
+        }
+        this.slots.put(name, this.names.size());
+        this.names.add(name);
+        return this.names.size() - 1;
+    }
+
+    /**
+     * Adds consecutive columns.
+     * @param names
+     * @return slot of the first column
+     */
+    public int addAll(String[] names) {
+        int first = this.names.size();
+        for (String name : names) {
+            this.add(name);
+        }
+        return first;
+    }
+
+    /**
+     * Adds the columns prefix1..prefixn.
+     * @param prefix
+     * @param n
+     * @return slot of the first column
+     */
+    public int addAll(String prefix, int n) {
+        int first = this.names.size();
+        for (int i = 1; i <= n; i++) {
+            this.add(prefix + i);
+        }
+        return first;
+    }
+
+    /**
+     * Adds the statistics of the x, y and z values, axis by axis, in the
+     * order of STATS.
+     * @return slot of x_mean
+     */
+    public int addAxes() {
+        int first = this.names.size();
+        for (String axis : AXES) {
+            for (String stat : STATS) {
+                this.add(axis + "_" + stat);
+            }
+        }
+        return first;
+    }
+
+    FeatureSchema fix() {
+        this.fixed = true;
+        return this;
+    }
+
+    public int size() {
+        return this.names.size();
+    }
+
+    public String getName(int slot) {
+        return this.names.get(slot);
+    }
+
+    /**
+     * @param name
+     * @return slot of the column, -1 if there is no such column
+     */
+    public int indexOf(String name) {
+        Integer slot = this.slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return a new row of this schema, all zeros
+     */
+    public Features newFeatures() {
+        return new Features(this);
+    }
+
+    /**
+     * @param label_names names of the label columns, null for a single
+     * "label" column and an empty array for no label at all
+     * @return header line of a features file
+     */
+    public String getHeader(String[] label_names) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.names.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(this.names.get(i));
+        }
+        if (label_names == null) {
+            label_names = new String[] {"label"};
+        }
+        for (String name : label_names) {
+            sb.append(", ").append(name);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the names of the columns, comma separated
+     */
+    @Override
+    public String toString() {
+        return this.getHeader(new String[0]);
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Writes features files: a header line, then one line per row.
+ *
+ * A row is formatted into a StringBuilder that is reused for every row
+ * (StringBuilder.append(double) does not make a String) and copied into a
+ * byte buffer, so writing a row allocates nothing however many columns it
+ * has. The lines are the same as the ones PrintWriter.println(features)
+ * used to write.
+ */
+public class FeatureWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private OutputStream out;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private StringBuilder line = new StringBuilder(256);
+
+    public FeatureWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * @param out the stream is closed by close()
+     */
+    public FeatureWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param schema
+     * @param label_names see FeatureSchema.getHeader()
+     * @throws IOException
+     */
+    public void writeHeader(FeatureSchema schema, String[] label_names)
+            throws IOException {
+        this.line.setLength(0);
+        this.line.append(schema.getHeader(label_names));
+        this.writeLine();
+    }
+
+    /**
+     * @param features
+     * @param with_labels false to leave the label(s) out
+     * @throws IOException
+     */
+    public void write(Features features, boolean with_labels)
+            throws IOException {
+        this.line.setLength(0);
+        features.appendTo(this.line, with_labels);
+        this.writeLine();
+    }
+
+    private void writeLine() throws IOException {
+        this.line.append(NEWLINE);
+        int length = this.line.length();
+        for (int i = 0; i < length; i++) {
+            if (this.pos == this.buffer.length) {
+                this.flushBuffer();
+            }
+            // numbers, separators and ascii names only
+            this.buffer[this.pos++] = (byte) this.line.charAt(i);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        this.out.write(this.buffer, 0, this.pos);
+        this.pos = 0;
+    }
+
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.out.flush();
+    }
+
+    public void close() throws IOException {
+        try {
+            this.flushBuffer();
+        } finally {
+            this.out.close();
+        }
+    }
+}
@@ -1,87 +1,180 @@
-
+import java.util.Arrays;
+
+
+/**
+ * One row of a features file: the values of the columns of a FeatureSchema
+ * in a double[], and the label(s) of the row.
+ *
+ * The extractors write straight into the slots of the row (see set() and
+ * getValues()); the statistics also have their own getters and setters. A
+ * row can be reused with clear(), and appendTo() writes it without making
+ * a String per value.
+ */
 public class Features {
-    private double min;
-    private double max;
-    private double mean;
-    private double variance;
-    private double rms;
-    private double skewness;
-    private double kurtosis;
+    private FeatureSchema schema;
+    private double[] values;
     private int label;
+    // label of every scheme (see LabelSchemes), null if there is only one
+    private int[] labels;
+
+    /**
+     * A row of the statistics only.
+     */
+    public Features() {
+        this(FeatureSchema.DEFAULT);
+    }
+
+    /**
+     * @param schema columns of the row; they cannot change afterwards
+     */
+    public Features(FeatureSchema schema) {
+        this.schema = schema.fix();
+        this.values = new double[schema.size()];
+    }
+
+    public FeatureSchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * @return the values of the row, in the order of the schema; changes
+     * to the array change the row
+     */
+    public double[] getValues() {
+        return this.values;
+    }
+
+    public double get(int slot) {
+        return this.values[slot];
+    }
+
+    public void set(int slot, double value) {
+        this.values[slot] = value;
+    }
+
+    /**
+     * Copies values into the slots from slot on.
+     * @param slot
+     * @param values
+     */
+    public void set(int slot, double[] values) {
+        System.arraycopy(values, 0, this.values, slot, values.length);
+    }
+
+    /**
+     * Zeroes the values and removes the labels, to reuse the row.
+     */
+    public void clear() {
+        Arrays.fill(this.values, 0);
+        this.label = 0;
+        this.labels = null;
+    }
 
     public double getMin() {
-        return min;
+        return this.values[FeatureSchema.MIN];
     }
 
     public void setMin(double min) {
-        this.min = min;
+        this.values[FeatureSchema.MIN] = min;
     }
 
     public double getMax() {
-        return max;
+        return this.values[FeatureSchema.MAX];
     }
 
     public void setMax(double max) {
-        this.max = max;
+        this.values[FeatureSchema.MAX] = max;
     }
 
     public double getVariance() {
-        return variance;
+        return this.values[FeatureSchema.VARIANCE];
     }
 
     public void setVariance(double variance) {
-        this.variance = variance;
+        this.values[FeatureSchema.VARIANCE] = variance;
     }
 
     public double getMean() {
-        return mean;
+        return this.values[FeatureSchema.MEAN];
     }
 
     public void setMean(double mean) {
-        this.mean = mean;
+        this.values[FeatureSchema.MEAN] = mean;
     }
 
     public double getRms() {
-        return rms;
+        return this.values[FeatureSchema.RMS];
     }
 
     public void setRms(double rms) {
-        this.rms = rms;
-    }
-    
-    @Override
-    public String toString() {
-        return  this.mean + "," +
-                this.skewness + "," +
-                this.kurtosis + "," +
-                this.variance + "," +
-                this.min + "," +
-                this.max + "," +
-                this.rms + "," +
-                label;
-    }
-    
-    public static String getFeaturesName() {
-        return "mean, skewness, kurtosis, variance, min, max, rms, label";
-    }
-
-    public void setLabel(int label) {
-        this.label = label;
+        this.values[FeatureSchema.RMS] = rms;
     }
 
     public double getSkewness() {
-        return skewness;
+        return this.values[FeatureSchema.SKEWNESS];
     }
 
     public void setSkewness(double skewness) {
-        this.skewness = skewness;
+        this.values[FeatureSchema.SKEWNESS] = skewness;
     }
 
     public double getKurtosis() {
-        return kurtosis;
+        return this.values[FeatureSchema.KURTOSIS];
     }
 
     public void setKurtosis(double kurtosis) {
-        this.kurtosis = kurtosis;
+        this.values[FeatureSchema.KURTOSIS] = kurtosis;
+    }
+
+    /**
+     * Appends the row, comma separated, to sb.
+     * @param sb
+     * @param with_labels false to leave the label(s) out
+     * @return sb
+     */
+    public StringBuilder appendTo(StringBuilder sb, boolean with_labels) {
+        for (int i = 0; i < this.values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(this.values[i]);
+        }
+        if (!with_labels) {
+            return sb;
+        }
+        if (this.labels != null) {
+            for (int i = 0; i < this.labels.length; i++) {
+                sb.append(',').append(this.labels[i]);
+            }
+        } else {
+            sb.append(',').append(this.label);
+        }
+        return sb;
+    }
+
+    @Override
+    public String toString() {
+        return this.appendTo(new StringBuilder(), true).toString();
+    }
+
+    public int getLabel() {
+        return label;
+    }
+
+    public void setLabel(int label) {
+        this.label = label;
+    }
+
+    public int[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Sets the labels of all the schemes; they are written instead of the
+     * single label.
+     * @param labels
+     */
+    public void setLabels(int[] labels) {
+        this.labels = labels;
     }
 }
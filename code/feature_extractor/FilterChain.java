@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+
+
+/**
+ * Filters applied one after the other.
+ *
+ * A chain is a SignalFilter itself, for a live feed, and it can also be run
+ * in place over a column of values or over the g-force values of a
+ * SignalBuffer. The batch methods start a new stream (reset()) every time.
+ *
+ * A chain can be written as a comma separated list of filters, e.g. the
+ * smoothing of ends_clipper.py is "exp:0.09,exp:0.2":
+ *
+ *   exp:alpha                  ExponentialFilter
+ *   ma:window                  MovingAverageFilter
+ *   bandpass:rate:center:q     BiquadFilter.bandPass
+ *   gravity:alpha              GravityFilter
+ */
+public class FilterChain implements SignalFilter {
+    private ArrayList<SignalFilter> filters = new ArrayList<SignalFilter>();
+    private String spec = "";
+
+    /**
+     * @param spec comma separated list of filters, see above
+     * @return the chain of the filters
+     */
+    public static FilterChain parse(String spec) {
+        FilterChain chain = new FilterChain();
+        for (String filter : spec.split(",")) {
+            String[] args = filter.trim().split(":");
+            try {
+                if (args[0].equals("exp") && args.length == 2) {
+                    chain.add(new ExponentialFilter(
+                            Double.parseDouble(args[1])));
+                } else if (args[0].equals("ma") && args.length == 2) {
+                    chain.add(new MovingAverageFilter(
+                            Integer.parseInt(args[1])));
+                } else if (args[0].equals("bandpass") && args.length == 4) {
+                    chain.add(BiquadFilter.bandPass(
+                            Double.parseDouble(args[1]),
+                            Double.parseDouble(args[2]),
+                            Double.parseDouble(args[3])));
+                } else if (args[0].equals("gravity") && args.length == 2) {
+                    chain.add(new GravityFilter(
+                            Double.parseDouble(args[1])));
+                } else {
+                    throw new IllegalArgumentException(
+                            "unknown filter: " + filter);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "bad filter argument: " + filter);
+            }
+        }
+        chain.spec = spec;
+        return chain;
+    }
+
+    /**
+     * Appends a filter to the chain.
+     * @param filter
+     * @return this chain
+     */
+    public FilterChain add(SignalFilter filter) {
+        this.filters.add(filter);
+        return this;
+    }
+
+    public double filter(double value) {
+        for (int i = 0; i < this.filters.size(); i++) {
+            value = this.filters.get(i).filter(value);
+        }
+        return value;
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.filters.size(); i++) {
+            this.filters.get(i).reset();
+        }
+    }
+
+    /**
+     * Filters values[from..to) in place, as a new stream.
+     * @param values
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     */
+    public void apply(double[] values, int from, int to) {
+        this.reset();
+        for (int i = from; i < to; i++) {
+            values[i] = this.filter(values[i]);
+        }
+    }
+
+    /**
+     * Filters the g-force values of the signals in place, as a new stream.
+     * Views share their columns, so the buffer the signals were taken from
+     * sees the filtered values too.
+     * @param signals
+     */
+    public void apply(SignalBuffer signals) {
+        this.reset();
+        for (int i = 0; i < signals.size(); i++) {
+            signals.setGForce(i, this.filter(signals.getGForce(i)));
+        }
+    }
+
+    /**
+     * @return the spec the chain was parsed from
+     */
+    @Override
+    public String toString() {
+        return this.spec;
+    }
+}
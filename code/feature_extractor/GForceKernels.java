@@ -0,0 +1,130 @@
+/**
+ * The loops over the g-force column that every letter goes through: the
+ * magnitude of the readings, the mean and its removal (moveToBaseReference)
+ * and the sums of the central moments.
+ *
+ * This class is the plain scalar version. get() returns the SIMD version
+ * from vector/VectorGForceKernels.java (jdk.incubator.vector) when it was
+ * compiled and the JVM was started with --add-modules
+ * jdk.incubator.vector, and this one otherwise:
+ *
+ *   $ javac --add-modules jdk.incubator.vector -d . \
+ *         vector/VectorGForceKernels.java
+ *   $ java --add-modules jdk.incubator.vector FeatureExtractor ...
+ *
+ * -Dgforce.kernels=scalar forces the scalar version. The magnitudes are
+ * the same in both versions; the sums are added in a different order, so
+ * they can differ in the last bits.
+ */
+public class GForceKernels {
+    private static final String VECTOR_KERNELS = "VectorGForceKernels";
+    private static GForceKernels instance = null;
+
+    /**
+     * @return the fastest kernels available in this JVM
+     */
+    public static synchronized GForceKernels get() {
+        if (instance == null) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    private static GForceKernels load() {
+        if (!"scalar".equals(System.getProperty("gforce.kernels"))) {
+            try {
+                return (GForceKernels) Class.forName(VECTOR_KERNELS)
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                // not compiled
+            } catch (LinkageError e) {
+                // compiled, but jdk.incubator.vector was not added
+            }
+        }
+        return new GForceKernels();
+    }
+
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * out[i] = sqrt(x[i]^2 + y[i]^2 + z[i]^2) - g for i in [from, to).
+     * @param x
+     * @param y
+     * @param z
+     * @param g subtracted from every magnitude
+     * @param out
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     */
+    public void magnitude(double[] x, double[] y, double[] z, double g,
+            double[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out[i] = Math.sqrt(x[i]*x[i] + y[i]*y[i] + z[i]*z[i]) - g;
+        }
+    }
+
+    /**
+     * @param values
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return the sum of values[from..to)
+     */
+    public double sum(double[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Subtracts value from values[from..to) in place.
+     * @param values
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @param value
+     */
+    public void subtract(double[] values, int from, int to, double value) {
+        for (int i = from; i < to; i++) {
+            values[i] -= value;
+        }
+    }
+
+    /**
+     * Sums of the 2nd, 3rd and 4th powers of values[from..to) - mean, and
+     * the smallest and largest value, into sums[0..4].
+     * @param values
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @param mean
+     * @param sums array of length at least 5
+     */
+    public void centralSums(double[] values, int from, int to, double mean,
+            double[] sums) {
+        double m2 = 0;
+        double m3 = 0;
+        double m4 = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double d = values[i] - mean;
+            double d2 = d * d;
+            m2 += d2;
+            m3 += d2 * d;
+            m4 += d2 * d2;
+            if (values[i] < min) {
+                min = values[i];
+            }
+            if (values[i] > max) {
+                max = values[i];
+            }
+        }
+        sums[0] = m2;
+        sums[1] = m3;
+        sums[2] = m4;
+        sums[3] = min;
+        sums[4] = max;
+    }
+}
@@ -35,6 +35,28 @@ public class GenTrainingTesting {
             this.template_lr += scanner.nextLine() + "\n";
         }
         scanner.close();
+        // the attributes of the columns of the features file
+        this.template_lr = ArffTemplate.withColumns(this.template_lr,
+                this.heading, 1);
+    }
+
+    /**
+     * Writes the template of the unlabeled arff files (template.arff) with
+     * the attributes of the columns of the features file, for
+     * GenParagraphArff.
+     */
+    public void writeTemplate(File template_file, String path)
+            throws IOException {
+        String template = "";
+        Scanner scanner = new Scanner(template_file);
+        while (scanner.hasNextLine()) {
+            template += scanner.nextLine() + "\n";
+        }
+        scanner.close();
+        PrintWriter pw = new PrintWriter(new BufferedWriter(
+                new FileWriter(path + "/template.arff")));
+        pw.print(ArffTemplate.withColumns(template, this.heading, 1));
+        pw.close();
     }
 
     public void fetchAllFeatures(File file)
@@ -49,8 +71,10 @@ public class GenTrainingTesting {
             char az_label = (char)(int_label - 1 + 'A' + 32);
             String data = line.substring(0, last_comma);
             if (rand.nextDouble() <= FRACTION) {
-                this.training_lr.add(data + "," + this.getLRLabel(az_label));
-                this.training_ud.add(data + "," + this.getUDLabel(az_label));
+                this.training_lr.add(data + "," + LabelSchemes.getLabel(
+                        LabelSchemes.LR, az_label));
+                this.training_ud.add(data + "," + LabelSchemes.getLabel(
+                        LabelSchemes.UD, az_label));
             } else {
                 ArrayList<String> features = null;
                 if (this.testing.containsKey(az_label)) {
@@ -65,40 +89,6 @@ public class GenTrainingTesting {
         scanner.close();
     }
     
-    private int getUDLabel(char ch) {
-        char[] up = {'q','w','e','r','t','y','u','i','o','p'};
-        char[] down = {'a','s','d','f','g','h','j','k','l','z','x','c','v',
-                        'b','n','m'};
-        for (int i = 0; i < up.length; i++) {
-            if (up[i] == ch) {
-                return 1;   // U
-            }
-        }
-        for (int i = 0; i < down.length; i++) {
-            if (down[i] == ch) {
-                return 2;   // D
-            }
-        }
-        return 0;
-    }
-
-    private int getLRLabel(char ch) {
-        char[] left = {'a','b','c','d','e','f','g','q',
-                        'r','s','t','v','w','x','z'};
-        char[] right = {'h','i','j','k','l','m','n','o','p','u','y'};
-        for (int i = 0; i < left.length; i++) {
-            if (left[i] == ch) {
-                return 1;   // L
-            }
-        }
-        for (int i = 0; i < right.length; i++) {
-            if (right[i] == ch) {
-                return 2;   // R
-            }
-        }
-        return 0;
-    }
-
     public void deleteDirectory(File dir) {
         if (!dir.exists()) {
             return;
@@ -134,6 +124,7 @@ public class GenTrainingTesting {
         ob.fetchAllFeatures(new File(features_file));
         ob.readTemplateLR(new File(template_file_lr));
         ob.writeTrainingTesting(outdir_path);
+        ob.writeTemplate(new File("../scripts/template.arff"), outdir_path);
     }
     
     private void writeTrainingTesting(String path) throws IOException {
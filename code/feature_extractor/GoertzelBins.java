@@ -0,0 +1,112 @@
+/**
+ * Power of the g-force of a letter at a few chosen frequencies, with the
+ * Goertzel algorithm instead of a full spectrum.
+ *
+ * A bin costs one multiplication and two additions per reading, so the
+ * bins cost O(n * bins) and no FFT length, plan or buffer is needed. The
+ * Goertzel coefficients of the bin set are computed once in the
+ * constructor, and compute() does not allocate anything but the array it
+ * returns (nothing at all with a caller supplied array). An instance holds
+ * no state between calls, so it can be shared between threads.
+ *
+ * The value of a bin is the periodogram of the demeaned g-force,
+ * |sum_t (g_t - mean) exp(-2 pi i f t)|^2 / n.
+ */
+public class GoertzelBins {
+    private final double[] frequencies;
+    // 2 cos(2 pi f) of every bin
+    private final double[] coeff;
+
+    /**
+     * Bins evenly spaced between 0 and 0.5 cycles per sample, the same
+     * frequencies as ARSpectrum(n_freq).
+     * @param n_freq number of bins
+     */
+    public GoertzelBins(int n_freq) {
+        this(evenlySpaced(n_freq));
+    }
+
+    /**
+     * @param frequencies frequencies of the bins, in cycles per sample
+     * (0 to 0.5; at 128 readings per second, 0.1 is 12.8Hz)
+     */
+    public GoertzelBins(double[] frequencies) {
+        this.frequencies = frequencies.clone();
+        this.coeff = new double[frequencies.length];
+        for (int j = 0; j < frequencies.length; j++) {
+            if (frequencies[j] < 0 || frequencies[j] > 0.5) {
+                throw new IllegalArgumentException("frequency not in " +
+                        "[0, 0.5]: " + frequencies[j]);
+            }
+            this.coeff[j] = 2 * Math.cos(2 * Math.PI * frequencies[j]);
+        }
+    }
+
+    private static double[] evenlySpaced(int n_freq) {
+        if (n_freq < 2) {
+            throw new IllegalArgumentException("need at least 2 frequencies");
+        }
+        double[] frequencies = new double[n_freq];
+        for (int j = 0; j < n_freq; j++) {
+            frequencies[j] = 0.5 * j / (n_freq - 1);
+        }
+        return frequencies;
+    }
+
+    public int getNumBins() {
+        return this.coeff.length;
+    }
+
+    /**
+     * @return the j'th frequency, in cycles per sample
+     */
+    public double getFrequency(int j) {
+        return this.frequencies[j];
+    }
+
+    /**
+     * @param signals
+     * @return power of the g-force values at every frequency
+     */
+    public double[] compute(SignalBuffer signals) {
+        double[] power = new double[this.coeff.length];
+        this.compute(signals, power);
+        return power;
+    }
+
+    /**
+     * Computes the power of the g-force values into power.
+     * @param signals
+     * @param power array of length at least getNumBins()
+     */
+    public void compute(SignalBuffer signals, double[] power) {
+        this.compute(signals, power, 0);
+    }
+
+    /**
+     * Computes the power of the g-force values into
+     * power[offset..offset + getNumBins()), e.g. the slots of a row of
+     * features.
+     * @param signals
+     * @param power
+     * @param offset index of the first bin in power
+     */
+    public void compute(SignalBuffer signals, double[] power, int offset) {
+        int n = signals.size();
+        if (n == 0) {
+            throw new IllegalArgumentException("no readings");
+        }
+        double mean = FeatureExtractor.meanGForce(signals);
+        for (int j = 0; j < this.coeff.length; j++) {
+            double c = this.coeff[j];
+            double s1 = 0;
+            double s2 = 0;
+            for (int t = 0; t < n; t++) {
+                double s = signals.getGForce(t) - mean + c * s1 - s2;
+                s2 = s1;
+                s1 = s;
+            }
+            power[offset + j] = (s1 * s1 + s2 * s2 - c * s1 * s2) / n;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Removes the slowly changing part of the values: the gravity left in the
+ * g-force (or in one axis) when the phone is not lying flat, and drifts of
+ * the sensor. The gravity is followed by an exponential low-pass, which is
+ * subtracted from every value.
+ */
+public class GravityFilter implements SignalFilter {
+    private ExponentialFilter low_pass;
+
+    /**
+     * @param alpha weight of a new value in the gravity estimate; small
+     * values follow the gravity slowly
+     */
+    public GravityFilter(double alpha) {
+        this.low_pass = new ExponentialFilter(alpha);
+    }
+
+    public double filter(double value) {
+        return value - this.low_pass.filter(value);
+    }
+
+    public void reset() {
+        this.low_pass.reset();
+    }
+}
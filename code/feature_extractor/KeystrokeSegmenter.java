@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * Breaks a recording into the windows of its key presses.
+ *
+ * A key press is a peak of the absolute g-force (relative to a base
+ * reference) of at least the g-force threshold. The peaks are taken from
+ * the largest down; every peak claims the readings from before_thresh
+ * before it to after_thresh after it (plus the first reading beyond each
+ * end), and a reading claimed by a larger peak can not start a window of
+ * its own.
+ *
+ * Only the local maxima over the threshold are ranked, in a sort of
+ * primitive keys, the window ends are found by binary search on the
+ * timestamps, and the claimed readings are marked in a bitmap, so a
+ * recording is broken in linear time plus the sort of its few candidate
+ * peaks. The windows are returned in time order.
+ */
+public class KeystrokeSegmenter {
+    private long before_thresh;
+    private long after_thresh;
+    private double gforce_thresh;
+    private int max_peaks = Integer.MAX_VALUE;
+
+    /**
+     * @param before_thresh micro-seconds kept before a peak
+     * @param after_thresh micro-seconds kept after a peak
+     * @param gforce_thresh smallest absolute g-force of a peak
+     */
+    public KeystrokeSegmenter(long before_thresh, long after_thresh,
+            double gforce_thresh) {
+        this.before_thresh = before_thresh;
+        this.after_thresh = after_thresh;
+        this.gforce_thresh = gforce_thresh;
+    }
+
+    /**
+     * Stops after the given number of (largest) peaks.
+     * @param max_peaks
+     */
+    public void setMaxPeaks(int max_peaks) {
+        this.max_peaks = max_peaks;
+    }
+
+    /**
+     * @param signals recording, in time order
+     * @param base base reference subtracted from the g-force values
+     * @return the windows of the key presses, in time order
+     */
+    public ArrayList<SignalBuffer> segment(final SignalBuffer signals,
+            final double base) {
+        int n = signals.size();
+
+        // candidate peaks: the readings over the threshold that no neighbour
+        // exceeds; a reading with a larger neighbour is on the slope of a
+        // peak, not a key press of its own
+        int[] indexes = new int[n];
+        double[] magnitudes = new double[n];
+        int count = 0;
+        double previous = 0;
+        double current = n > 0 ? Math.abs(signals.getGForce(0) - base) : 0;
+        for (int i = 0; i < n; i++) {
+            double next = i + 1 < n ?
+                    Math.abs(signals.getGForce(i + 1) - base) : 0;
+            if (current >= this.gforce_thresh && current >= previous &&
+                    current >= next) {
+                indexes[count] = i;
+                magnitudes[count] = current;
+                count++;
+            }
+            previous = current;
+            current = next;
+        }
+        // largest first, the earliest on ties: the rank of the magnitude
+        // among the distinct ones (largest 0) and the index, in one long
+        double[] distinct = Arrays.copyOf(magnitudes, count);
+        Arrays.sort(distinct);
+        int num_distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (num_distinct == 0 ||
+                    distinct[i] != distinct[num_distinct - 1]) {
+                distinct[num_distinct++] = distinct[i];
+            }
+        }
+        long[] candidates = new long[count];
+        for (int i = 0; i < count; i++) {
+            long rank = num_distinct - 1 - Arrays.binarySearch(distinct, 0,
+                    num_distinct, magnitudes[i]);
+            candidates[i] = rank << 32 | indexes[i];
+        }
+        Arrays.sort(candidates);
+
+        // non-maximum suppression
+        boolean[] claimed = new boolean[n];
+        boolean[] is_peak = new boolean[n];
+        int peaks = 0;
+        for (long candidate : candidates) {
+            int peak = (int) candidate;
+            if (peaks == this.max_peaks) {
+                break;
+            }
+            if (claimed[peak]) {
+                continue;
+            }
+            int start = this.getWindowStart(signals, peak);
+            int end = this.getWindowEnd(signals, peak);
+            for (int i = start; i <= end; i++) {
+                claimed[i] = true;
+            }
+            is_peak[peak] = true;
+            peaks++;
+        }
+
+        // the window starts never decrease with the peak, so the windows are
+        // in time order when taken in the order of their peaks
+        ArrayList<SignalBuffer> windows = new ArrayList<SignalBuffer>(peaks);
+        for (int i = 0; i < n; i++) {
+            if (is_peak[i]) {
+                windows.add(signals.slice(this.getWindowStart(signals, i),
+                        this.getWindowEnd(signals, i) + 1));
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * @return index of the last reading more than before_thresh before the
+     * peak, or 0
+     */
+    public int getWindowStart(SignalBuffer signals, int peak) {
+        long peak_time_stamp = signals.getTimeStamp(peak);
+        int first_inside = signals.firstIndexAtOrAfter(
+                peak_time_stamp - this.before_thresh);
+        return Math.max(first_inside - 1, 0);
+    }
+
+    /**
+     * @return index of the first reading more than after_thresh after the
+     * peak, or the last reading
+     */
+    public int getWindowEnd(SignalBuffer signals, int peak) {
+        long peak_time_stamp = signals.getTimeStamp(peak);
+        int first_outside = signals.firstIndexAfter(
+                peak_time_stamp + this.after_thresh);
+        return Math.min(first_outside, signals.size() - 1);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * The labeling schemes of the key presses, as lookup tables from the
+ * letter to its class.
+ *
+ * LETTER: a = 1 .. z = 26, enter = 27, space = 28
+ * LR:     1 for the left hand, 2 for the right hand
+ * UD:     1 for the upper row, 2 for the lower rows
+ * PAIRED: 13 pairs of neighbouring keys
+ * TRIAD:  9 groups of three neighbouring keys
+ * SEPTET: 4 groups of six or seven keys
+ *
+ * Except in LETTER, enter, space and any other key are 0.
+ */
+public class LabelSchemes {
+    public static final int LETTER = 0;
+    public static final int LR = 1;
+    public static final int UD = 2;
+    public static final int PAIRED = 3;
+    public static final int TRIAD = 4;
+    public static final int SEPTET = 5;
+    public static final int NUM_SCHEMES = 6;
+
+    /** column names of the schemes in the features files */
+    public static final String[] NAMES = {"label", "lr_label", "ud_label",
+        "paired_label", "triad_label", "septet_label"};
+
+    // the keys of every class, class 1 first
+    private static final String[][] CLASSES = {
+        null,
+        {"abcdefgqrstvwxz", "hijklmnopuy"},
+        {"qwertyuiop", "asdfghjklzxcvbnm"},
+        {"qw", "er", "ty", "ui", "op", "as", "df", "gb", "zx", "cv", "hj",
+            "kl", "nm"},
+        {"qaw", "zsx", "edr", "fcv", "tgy", "hbn", "uji", "olp", "km"},
+        {"qweaszx", "rtdfgcv", "yuhjbn", "iopklm"},
+    };
+
+    private static final int[][] TABLES = new int[NUM_SCHEMES][128];
+
+    static {
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            TABLES[LETTER][ch] = ch - 'a' + 1;
+        }
+        for (int scheme = 1; scheme < NUM_SCHEMES; scheme++) {
+            for (int c = 0; c < CLASSES[scheme].length; c++) {
+                String keys = CLASSES[scheme][c];
+                for (int i = 0; i < keys.length(); i++) {
+                    TABLES[scheme][keys.charAt(i)] = c + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param scheme one of LETTER, LR, UD, PAIRED, TRIAD and SEPTET
+     * @param dirName name of the directory of the key press ("a", "enter")
+     * @return class of the key press in the scheme
+     */
+    public static int getLabel(int scheme, String dirName) {
+        if (scheme == LETTER) {
+            if (dirName.equals("enter")) {
+                return 27;
+            } else if (dirName.equals("space")) {
+                return 28;
+            }
+            return getLabel(scheme, Character.toLowerCase(dirName.charAt(0)));
+        }
+        if (dirName.equals("enter") || dirName.equals("space")) {
+            return 0;
+        }
+        return getLabel(scheme, dirName.charAt(0));
+    }
+
+    /**
+     * @param scheme
+     * @param ch a letter
+     * @return class of the letter in the scheme, 0 if it has none
+     */
+    public static int getLabel(int scheme, char ch) {
+        if (ch >= 128) {
+            return 0;
+        }
+        return TABLES[scheme][ch];
+    }
+
+    /**
+     * @param dirName name of the directory of the key press
+     * @return class of the key press in every scheme, in scheme order
+     */
+    public static int[] getLabels(String dirName) {
+        int[] labels = new int[NUM_SCHEMES];
+        for (int scheme = 0; scheme < NUM_SCHEMES; scheme++) {
+            labels[scheme] = getLabel(scheme, dirName);
+        }
+        return labels;
+    }
+}
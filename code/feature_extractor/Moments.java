@@ -0,0 +1,219 @@
+/**
+ * Accumulates the statistics used as features (min, max, mean, variance,
+ * rms, skewness and kurtosis).
+ *
+ * add() updates the central moments incrementally, in a single pass that
+ * never stores or re-reads a value. addAll() instead reads its chunk of an
+ * array twice with GForceKernels, for the mean and then for the central
+ * sums, and merges the chunk in; the two passes are much faster than add()
+ * one value at a time. Two accumulators built over separate chunks of a
+ * window can be combined with merge(), which gives the same result as
+ * accumulating the whole window in one. Neither path allocates once the
+ * accumulator is made, and an accumulator is not thread-safe.
+ *
+ * src: Pebay, "Formulas for Robust, One-Pass Parallel Computation of
+ * Covariances and Arbitrary-Order Statistical Moments", SAND2008-6212
+ */
+public class Moments {
+    private long n;
+    private double min;
+    private double max;
+    private double mean;
+    // sums of the 2nd, 3rd and 4th powers of the differences from the mean
+    private double m2;
+    private double m3;
+    private double m4;
+    // central sums and min/max of the chunk of addAll()
+    private double[] sums = new double[5];
+
+    public Moments() {
+        this.reset();
+    }
+
+    public void reset() {
+        this.n = 0;
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        this.mean = 0;
+        this.m2 = 0;
+        this.m3 = 0;
+        this.m4 = 0;
+    }
+
+    public void add(double value) {
+        long n1 = this.n;
+        this.n++;
+        double delta = value - this.mean;
+        double delta_n = delta / this.n;
+        double delta_n2 = delta_n * delta_n;
+        double term1 = delta * delta_n * n1;
+        this.mean += delta_n;
+        this.m4 += term1 * delta_n2 * (this.n * this.n - 3 * this.n + 3)
+                + 6 * delta_n2 * this.m2
+                - 4 * delta_n * this.m3;
+        this.m3 += term1 * delta_n * (this.n - 2)
+                - 3 * delta_n * this.m2;
+        this.m2 += term1;
+        if (value < this.min) {
+            this.min = value;
+        }
+        if (value > this.max) {
+            this.max = value;
+        }
+    }
+
+    /**
+     * Adds the g-force values of all the readings in the buffer.
+     * @param signals
+     */
+    public void addGForces(SignalBuffer signals) {
+        this.addAll(signals.getGForceColumn(), signals.getOffset(),
+                signals.getOffset() + signals.size());
+    }
+
+    /**
+     * Adds values[from..to). The chunk is summed in two passes of
+     * GForceKernels (the mean, then the central sums) and merged in.
+     * @param values
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     */
+    public void addAll(double[] values, int from, int to) {
+        int n = to - from;
+        if (n <= 0) {
+            return;
+        }
+        GForceKernels kernels = GForceKernels.get();
+        double mean = kernels.sum(values, from, to) / n;
+        kernels.centralSums(values, from, to, mean, this.sums);
+        this.merge(n, mean, this.sums[0], this.sums[1], this.sums[2],
+                this.sums[3], this.sums[4]);
+    }
+
+    /**
+     * Adds the x, y, z and g-force values of all the readings to four
+     * accumulators in a single pass over the columns of the buffer, instead
+     * of one pass per column.
+     * @param signals
+     * @param x
+     * @param y
+     * @param z
+     * @param gforce
+     */
+    public static void addAxes(SignalBuffer signals, Moments x, Moments y,
+            Moments z, Moments gforce) {
+        double[] xs = signals.getXColumn();
+        double[] ys = signals.getYColumn();
+        double[] zs = signals.getZColumn();
+        double[] gs = signals.getGForceColumn();
+        int to = signals.getOffset() + signals.size();
+        for (int i = signals.getOffset(); i < to; i++) {
+            x.add(xs[i]);
+            y.add(ys[i]);
+            z.add(zs[i]);
+            gforce.add(gs[i]);
+        }
+    }
+
+    /**
+     * Combines the values accumulated by another instance into this one.
+     * @param that
+     */
+    public void merge(Moments that) {
+        this.merge(that.n, that.mean, that.m2, that.m3, that.m4, that.min,
+                that.max);
+    }
+
+    /**
+     * Combines the statistics of a chunk of count values into this one.
+     */
+    private void merge(long count, double mean, double m2b, double m3b,
+            double m4b, double min, double max) {
+        if (count == 0) {
+            return;
+        }
+        if (this.n == 0) {
+            this.n = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.m2 = m2b;
+            this.m3 = m3b;
+            this.m4 = m4b;
+            return;
+        }
+        double na = this.n;
+        double nb = count;
+        double n = na + nb;
+        double delta = mean - this.mean;
+        double delta2 = delta * delta;
+        double delta3 = delta2 * delta;
+        double delta4 = delta2 * delta2;
+
+        double m2 = this.m2 + m2b + delta2 * na * nb / n;
+        double m3 = this.m3 + m3b
+                + delta3 * na * nb * (na - nb) / (n * n)
+                + 3 * delta * (na * m2b - nb * this.m2) / n;
+        double m4 = this.m4 + m4b
+                + delta4 * na * nb * (na * na - na * nb + nb * nb) / (n * n * n)
+                + 6 * delta2 * (na * na * m2b + nb * nb * this.m2) / (n * n)
+                + 4 * delta * (na * m3b - nb * this.m3) / n;
+
+        this.mean += delta * nb / n;
+        this.m2 = m2;
+        this.m3 = m3;
+        this.m4 = m4;
+        this.n += count;
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+    }
+
+    public long getCount() {
+        return this.n;
+    }
+
+    public double getMin() {
+        return this.min;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
+
+    public double getMean() {
+        return this.mean;
+    }
+
+    public double getVariance() {
+        return this.m2 / this.n;
+    }
+
+    public double getRms() {
+        return Math.sqrt(this.mean * this.mean + this.m2 / this.n);
+    }
+
+    /**
+     * Skewness is a measure of the asymmetry of our signal.
+     * A positive skew means that the right tail is longer
+     * and a negative skew means that the left tail is longer.
+     */
+    public double getSkewness() {
+        double variance = this.getVariance();
+        return this.m3 / (this.n - 1) / (variance * Math.sqrt(variance));
+    }
+
+    /**
+     * Kurtosis is a measure of whether the data are peaked or flat relative
+     * to a normal distribution. That is, data sets with high kurtosis tend to
+     * have a distinct peak near the mean, decline rather rapidly, and have
+     * heavy tails. Data sets with low kurtosis tend to have a flat top near
+     * the mean rather than a sharp peak. A uniform distribution would be the
+     * extreme case.
+     *
+     * src: http://itl.nist.gov/div898/handbook/eda/section3/eda35b.htm
+     */
+    public double getKurtosis() {
+        double variance = this.getVariance();
+        return this.m4 / (this.n - 1) / (variance * variance);
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Mean of the last window values (of all the values, while there are
+ * fewer than window of them).
+ */
+public class MovingAverageFilter implements SignalFilter {
+    private double[] history;
+    private int next = 0;
+    private int count = 0;
+    private double sum = 0;
+
+    /**
+     * @param window number of values averaged
+     */
+    public MovingAverageFilter(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be >= 1: "
+                    + window);
+        }
+        this.history = new double[window];
+    }
+
+    public double filter(double value) {
+        if (this.count == this.history.length) {
+            this.sum -= this.history[this.next];
+        } else {
+            this.count++;
+        }
+        this.history[this.next] = value;
+        this.sum += value;
+        this.next = (this.next + 1) % this.history.length;
+        return this.sum / this.count;
+    }
+
+    public void reset() {
+        this.next = 0;
+        this.count = 0;
+        this.sum = 0;
+    }
+}
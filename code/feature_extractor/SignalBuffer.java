@@ -0,0 +1,330 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+
+/**
+ * Columnar container for the accelerometer readings of a recording.
+ *
+ * Timestamps are kept in micro-seconds in a long[] and the x, y, z and
+ * g-force values in parallel double[] columns, instead of one Signal object
+ * (and one BigInteger) per reading. slice() and shiftRelativeToOrigin()
+ * return views over the same columns, so breaking a recording into letters
+ * does not copy any data.
+ *
+ * Signal is still available through getSignal() for code that wants a
+ * single reading as an object.
+ */
+public class SignalBuffer {
+    public static final double G = Signal.G;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] timestamps;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private double[] gforce;
+    private int offset;
+    private int size;
+    // subtracted from every timestamp read through this buffer
+    private long origin;
+    private boolean view;
+
+    public SignalBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SignalBuffer(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.timestamps = new long[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.gforce = new double[capacity];
+        this.offset = 0;
+        this.size = 0;
+        this.origin = 0;
+        this.view = false;
+    }
+
+    private SignalBuffer(SignalBuffer parent, int offset, int size,
+            long origin) {
+        this.timestamps = parent.timestamps;
+        this.x = parent.x;
+        this.y = parent.y;
+        this.z = parent.z;
+        this.gforce = parent.gforce;
+        this.offset = offset;
+        this.size = size;
+        this.origin = origin;
+        this.view = true;
+    }
+
+    /**
+     * Appends a reading to the end of the buffer. The g-force is computed
+     * the same way as in Signal.
+     * @param timestamp in micro-seconds
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void add(long timestamp, double x, double y, double z) {
+        if (this.view) {
+            throw new UnsupportedOperationException(
+                    "cannot add to a view of a SignalBuffer");
+        }
+        if (this.size == this.timestamps.length) {
+            this.grow();
+        }
+        int i = this.size++;
+        this.timestamps[i] = timestamp;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.z[i] = z;
+        this.gforce[i] = Math.sqrt(x*x + y*y + z*z) - G;
+    }
+
+    /**
+     * Appends a reading without computing its g-force, for readers that
+     * add a whole recording and then call computeGForces() once.
+     * @param timestamp in micro-seconds
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void addXYZ(long timestamp, double x, double y, double z) {
+        if (this.view) {
+            throw new UnsupportedOperationException(
+                    "cannot add to a view of a SignalBuffer");
+        }
+        if (this.size == this.timestamps.length) {
+            this.grow();
+        }
+        int i = this.size++;
+        this.timestamps[i] = timestamp;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.z[i] = z;
+    }
+
+    /**
+     * Computes the g-force of the readings from index from on, the same
+     * way as add(), with GForceKernels.
+     * @param from first index, inclusive
+     */
+    public void computeGForces(int from) {
+        GForceKernels.get().magnitude(this.x, this.y, this.z, G,
+                this.gforce, this.offset + from, this.offset + this.size);
+    }
+
+    private void grow() {
+        int capacity = this.timestamps.length * 2;
+        long[] new_timestamps = new long[capacity];
+        System.arraycopy(this.timestamps, 0, new_timestamps, 0, this.size);
+        this.timestamps = new_timestamps;
+        this.x = this.growColumn(this.x, capacity);
+        this.y = this.growColumn(this.y, capacity);
+        this.z = this.growColumn(this.z, capacity);
+        this.gforce = this.growColumn(this.gforce, capacity);
+    }
+
+    private double[] growColumn(double[] column, int capacity) {
+        double[] new_column = new double[capacity];
+        System.arraycopy(column, 0, new_column, 0, this.size);
+        return new_column;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public long getTimeStamp(int i) {
+        return this.timestamps[this.index(i)] - this.origin;
+    }
+
+    public double getX(int i) {
+        return this.x[this.index(i)];
+    }
+
+    public double getY(int i) {
+        return this.y[this.index(i)];
+    }
+
+    public double getZ(int i) {
+        return this.z[this.index(i)];
+    }
+
+    public double getGForce(int i) {
+        return this.gforce[this.index(i)];
+    }
+
+    /**
+     * Overwrites the g-force of a reading. Views share their columns with
+     * the buffer they were taken from, so the change is visible in both.
+     */
+    public void setGForce(int i, double gforce) {
+        this.gforce[this.index(i)] = gforce;
+    }
+
+    /**
+     * @return the sum of the g-force values
+     */
+    public double sumGForce() {
+        return GForceKernels.get().sum(this.gforce, this.offset,
+                this.offset + this.size);
+    }
+
+    /**
+     * Subtracts value from every g-force value, in place.
+     * @param value
+     */
+    public void subtractGForce(double value) {
+        GForceKernels.get().subtract(this.gforce, this.offset,
+                this.offset + this.size, value);
+    }
+
+    // the columns and the index of reading 0 in them, for the kernels
+    double[] getXColumn() {
+        return this.x;
+    }
+
+    double[] getYColumn() {
+        return this.y;
+    }
+
+    double[] getZColumn() {
+        return this.z;
+    }
+
+    double[] getGForceColumn() {
+        return this.gforce;
+    }
+
+    int getOffset() {
+        return this.offset;
+    }
+
+    private int index(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + i + ", Size: " + this.size);
+        }
+        return this.offset + i;
+    }
+
+    /**
+     * Binary search for the first reading at or after a time. The
+     * timestamps of a recording never decrease.
+     * @param timestamp in micro-seconds
+     * @return index of the first reading with a timestamp >= timestamp,
+     * size() if there is none
+     */
+    public int firstIndexAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.getTimeStamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first reading after a time.
+     * @param timestamp in micro-seconds
+     * @return index of the first reading with a timestamp > timestamp,
+     * size() if there is none
+     */
+    public int firstIndexAfter(long timestamp) {
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.getTimeStamp(mid) <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a view of the readings in [from, to) without copying them.
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return view sharing the columns of this buffer
+     */
+    public SignalBuffer slice(int from, int to) {
+        if (from < 0 || to > this.size || from > to) {
+            throw new IndexOutOfBoundsException(
+                    "from: " + from + ", to: " + to + ", Size: " + this.size);
+        }
+        return new SignalBuffer(this, this.offset + from, to - from,
+                this.origin);
+    }
+
+    /**
+     * Returns a view of this buffer whose timestamps start at zero.
+     * @return view sharing the columns of this buffer
+     */
+    public SignalBuffer shiftRelativeToOrigin() {
+        if (this.size == 0) {
+            return new SignalBuffer(this, this.offset, 0, this.origin);
+        }
+        return new SignalBuffer(this, this.offset, this.size,
+                this.timestamps[this.offset]);
+    }
+
+    /**
+     * Rewrites the timestamps in place as (t - t[0]) / factor, e.g. to
+     * turn nano-seconds into micro-seconds relative to the first reading of
+     * this buffer. Views share their columns, so this changes the readings
+     * of the buffer the view was taken from too.
+     * @param factor
+     */
+    public void rebaseTimeStamps(long factor) {
+        if (this.size == 0) {
+            return;
+        }
+        long first = this.timestamps[this.offset];
+        for (int i = this.offset; i < this.offset + this.size; i++) {
+            this.timestamps[i] = (this.timestamps[i] - first) / factor;
+        }
+        this.origin = 0;
+    }
+
+    /**
+     * Returns the i'th reading as a Signal. The Signal is a copy; changing
+     * its g-force does not change this buffer.
+     */
+    public Signal getSignal(int i) {
+        Signal signal = new Signal(BigInteger.valueOf(this.getTimeStamp(i)),
+                this.getX(i), this.getY(i), this.getZ(i));
+        signal.setGForce(this.getGForce(i));
+        return signal;
+    }
+
+    /**
+     * @return all the readings of this buffer as Signals
+     */
+    public ArrayList<Signal> toSignals() {
+        ArrayList<Signal> signals = new ArrayList<Signal>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            signals.add(this.getSignal(i));
+        }
+        return signals;
+    }
+
+    @Override
+    public String toString() {
+        return "SignalBuffer[" + this.size + " readings]";
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Reads the accelerometer csv files (timestamp,x,y,z per line, timestamps
+ * in nano-seconds) into a SignalBuffer.
+ *
+ * The file is memory-mapped and parsed byte by byte straight into the
+ * columns of the buffer; no String, BigInteger or tokenizer is created per
+ * line. Timestamps are converted to micro-seconds relative to the first
+ * reading, the same way readCSV always did.
+ *
+ * Numbers with at most 15 significant digits (all the recorded data) are
+ * converted exactly with a single division; anything else falls back to
+ * Double.parseDouble.
+ */
+public class SignalCSVReader {
+    public static final long FACTOR = 1000;
+    // files are mapped in chunks of this size; a chunk ends on a line break
+    private static final long MAP_CHUNK = 1L << 28;
+    // rough length of a line, used to size the buffer before reading
+    private static final int BYTES_PER_LINE = 40;
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private MappedByteBuffer buffer;
+    private int pos;
+    private boolean first;
+    private long start_time;
+    private long factor = FACTOR;
+    private File file;
+    private long line;
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Sets the divisor of the timestamps; 1 keeps them in nano-seconds
+     * (still relative to the first reading).
+     * @param factor
+     */
+    public void setFactor(long factor) {
+        this.factor = factor;
+    }
+
+    /**
+     * Reads all the readings of a csv file.
+     * @param file csv file to read the data from
+     * @return SignalBuffer holding the readings of the file
+     * @throws IOException
+     */
+    public SignalBuffer read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            SignalBuffer signals = new SignalBuffer(
+                    (int) Math.min(size / BYTES_PER_LINE + 1, 1 << 30));
+            this.file = file;
+            this.first = true;
+            this.start_time = 0;
+            this.line = 0;
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(MAP_CHUNK, size - position);
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, length);
+                int consumed = this.parseLines(signals,
+                        position + length == size);
+                if (consumed == 0) {
+                    throw new IOException(file + ": line " + (this.line + 1)
+                            + " is too long");
+                }
+                position += consumed;
+            }
+            signals.computeGForces(0);
+            return signals;
+        } finally {
+            this.buffer = null;
+            raf.close();
+        }
+    }
+
+    /**
+     * Parses the complete lines of the mapped chunk.
+     * @return number of bytes consumed
+     */
+    private int parseLines(SignalBuffer signals, boolean last_chunk) {
+        int limit = this.buffer.limit();
+        int line_start = 0;
+        while (line_start < limit) {
+            int line_end = line_start;
+            while (line_end < limit && this.buffer.get(line_end) != '\n') {
+                line_end++;
+            }
+            if (line_end == limit && !last_chunk) {
+                // the rest of the line is in the next chunk
+                break;
+            }
+            this.line++;
+            this.parseLine(signals, line_start, line_end);
+            line_start = line_end + 1;
+        }
+        return Math.min(line_start, limit);
+    }
+
+    private void parseLine(SignalBuffer signals, int start, int end) {
+        this.pos = start;
+        this.skipWhitespace(end);
+        if (this.pos == end) {
+            return; // blank line
+        }
+        long time = this.parseLong(end);
+        this.skipSeparator(end);
+        double x = this.parseDouble(end);
+        this.skipSeparator(end);
+        double y = this.parseDouble(end);
+        this.skipSeparator(end);
+        double z = this.parseDouble(end);
+        if (this.first) {
+            this.first = false;
+            this.start_time = time;
+            time = 0;
+        } else {
+            // convert time passed to micro-second
+            time = (time - this.start_time) / this.factor;
+        }
+        signals.addXYZ(time, x, y, z);
+    }
+
+    private void skipWhitespace(int end) {
+        while (this.pos < end) {
+            byte c = this.buffer.get(this.pos);
+            if (c != ' ' && c != '\t' && c != '\r') {
+                break;
+            }
+            this.pos++;
+        }
+    }
+
+    private void skipSeparator(int end) {
+        this.skipWhitespace(end);
+        if (this.pos == end || this.buffer.get(this.pos) != ',') {
+            throw this.error("expected ','");
+        }
+        this.pos++;
+        this.skipWhitespace(end);
+    }
+
+    private long parseLong(int end) {
+        long value = 0;
+        int digits = 0;
+        while (this.pos < end) {
+            byte c = this.buffer.get(this.pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            digits++;
+            this.pos++;
+        }
+        // nano-second timestamps have 19 digits, which still fit in a long
+        if (digits == 0 || digits > 19 || value < 0) {
+            throw this.error("invalid timestamp");
+        }
+        return value;
+    }
+
+    private double parseDouble(int end) {
+        int start = this.pos;
+        boolean negative = false;
+        if (this.pos < end) {
+            byte c = this.buffer.get(this.pos);
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                this.pos++;
+            }
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int fraction_digits = 0;
+        boolean seen_digit = false;
+        boolean seen_point = false;
+        while (this.pos < end) {
+            byte c = this.buffer.get(this.pos);
+            if (c >= '0' && c <= '9') {
+                seen_digit = true;
+                if (significant < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        significant++;
+                    }
+                } else {
+                    significant++;
+                }
+                if (seen_point) {
+                    fraction_digits++;
+                }
+            } else if (c == '.' && !seen_point) {
+                seen_point = true;
+            } else {
+                break;
+            }
+            this.pos++;
+        }
+        boolean exponent = this.pos < end && (this.buffer.get(this.pos) == 'e'
+                || this.buffer.get(this.pos) == 'E');
+        if (!seen_digit || exponent || significant > 15
+                || fraction_digits >= POW10.length) {
+            return this.parseDoubleSlow(start, end);
+        }
+        double value = (double) mantissa;
+        if (fraction_digits > 0) {
+            value = value / POW10[fraction_digits];
+        }
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(int start, int end) {
+        int field_end = start;
+        while (field_end < end) {
+            byte c = this.buffer.get(field_end);
+            if (c == ',' || c == ' ' || c == '\t' || c == '\r') {
+                break;
+            }
+            field_end++;
+        }
+        int length = field_end - start;
+        if (length > this.scratch.length) {
+            this.scratch = new byte[length];
+        }
+        for (int i = 0; i < length; i++) {
+            this.scratch[i] = this.buffer.get(start + i);
+        }
+        this.pos = field_end;
+        try {
+            return Double.parseDouble(new String(this.scratch, 0, length,
+                    StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            throw this.error("invalid number");
+        }
+    }
+
+    private NumberFormatException error(String message) {
+        return new NumberFormatException(this.file + ": line " + this.line
+                + ": " + message);
+    }
+}
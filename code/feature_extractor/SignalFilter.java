@@ -0,0 +1,22 @@
+/**
+ * A filter over a stream of values (g-force or one axis of the readings).
+ *
+ * filter() takes one value at a time and keeps only a fixed amount of
+ * state, so the same filter works sample by sample on a live feed and in
+ * batch over a column of a SignalBuffer (see FilterChain). No filter
+ * allocates anything after it is built.
+ */
+public interface SignalFilter {
+
+    /**
+     * @param value next value of the stream
+     * @return the filtered value
+     */
+    double filter(double value);
+
+    /**
+     * Forgets the values seen so far, so the next value starts a new
+     * stream.
+     */
+    void reset();
+}
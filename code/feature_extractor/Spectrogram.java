@@ -0,0 +1,368 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Short-time Fourier transform of the g-force values of a letter, in place
+ * of write.spectogram in SpectogramFeatureWriter.R.
+ *
+ * The (demeaned) g-force is cut into frames of window readings, hop
+ * readings apart, each frame is multiplied by a Hann window and its power
+ * spectrum computed with the FFTPlan of FFTbase. The plan, the window and
+ * the frame buffers are made once per instance, so an instance should not
+ * be shared between threads.
+ *
+ * The time-frequency features go into the labeled features with the -stft
+ * option of FeatureExtractor and FeaturePipeline. Usage: java Spectrogram
+ * -d <dir-name> [-window n] [-hop n] [-images] [-parallel [n]] writes them
+ * on their own, keyed by the path of the recording as in FeaturePipeline,
+ * to data/features/<dir-name>-stft.csv and, with -images, a grayscale
+ * image of every spectrogram to data/spectograms/<letter>/<name>.png.
+ */
+public class Spectrogram extends FFTbase {
+    public static final int DEFAULT_WINDOW = 32; // 250ms at 128Hz
+    public static final int DEFAULT_HOP = 8;
+    // the frames are averaged over this many parts of the letter
+    public static final int TIME_BINS = 4;
+    // pixels per frame and per frequency bin in the images
+    public static final int IMAGE_SCALE = 4;
+
+    private int window;
+    private int hop;
+    private double[] hann;
+    private double window_power;
+    private double[] frame;
+    private double[] re;
+    private double[] im;
+
+    public Spectrogram() {
+        this(DEFAULT_WINDOW, DEFAULT_HOP);
+    }
+
+    /**
+     * @param window readings per frame
+     * @param hop readings between the starts of two frames
+     */
+    public Spectrogram(int window, int hop) {
+        if (window < 2 || hop < 1) {
+            throw new IllegalArgumentException("bad window " + window +
+                    " or hop " + hop);
+        }
+        this.window = window;
+        this.hop = hop;
+        this.hann = new double[window];
+        for (int i = 0; i < window; i++) {
+            this.hann[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / window);
+            this.window_power += this.hann[i] * this.hann[i];
+        }
+        this.frame = new double[window];
+        this.re = new double[this.getNumBins()];
+        this.im = new double[this.getNumBins()];
+        this.getPlan(window);
+    }
+
+    /**
+     * @return frequency bins of every frame, 0 to the Nyquist frequency
+     */
+    public int getNumBins() {
+        return this.window / 2 + 1;
+    }
+
+    /**
+     * @return number of time-frequency features, TIME_BINS * getNumBins()
+     */
+    public int getNumFeatures() {
+        return TIME_BINS * this.getNumBins();
+    }
+
+    /**
+     * @return names of the features, in the order of compute(): stft1_0
+     * is the power of bin 0 in the first part of the letter
+     */
+    public String[] getFeatureNames() {
+        String[] names = new String[this.getNumFeatures()];
+        int bins = this.getNumBins();
+        for (int t = 0; t < TIME_BINS; t++) {
+            for (int k = 0; k < bins; k++) {
+                names[t * bins + k] = "stft" + (t + 1) + "_" + k;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @param n number of readings
+     * @return number of frames; the last frame is padded with zeros
+     */
+    public int getNumFrames(int n) {
+        if (n <= this.window) {
+            return 1;
+        }
+        return 1 + (n - this.window + this.hop - 1) / this.hop;
+    }
+
+    /**
+     * @param signals
+     * @return power of every frame (first index) and frequency bin
+     */
+    public double[][] compute(SignalBuffer signals) {
+        int n = signals.size();
+        double mean = n == 0 ? 0 : FeatureExtractor.meanGForce(signals);
+        FFTPlan plan = this.getPlan(this.window);
+        double[][] spec = new double[this.getNumFrames(n)][];
+        for (int f = 0; f < spec.length; f++) {
+            int start = f * this.hop;
+            for (int i = 0; i < this.window; i++) {
+                this.frame[i] = start + i < n ?
+                        (signals.getGForce(start + i) - mean) * this.hann[i] :
+                        0;
+            }
+            plan.realForward(this.frame, this.re, this.im);
+            spec[f] = new double[this.getNumBins()];
+            for (int k = 0; k < spec[f].length; k++) {
+                spec[f][k] = (this.re[k] * this.re[k] +
+                        this.im[k] * this.im[k]) / this.window_power;
+            }
+        }
+        return spec;
+    }
+
+    /**
+     * Computes the time-frequency features of the g-force values into
+     * features[offset..offset + getNumFeatures()), e.g. the slots of a row
+     * of features.
+     * @param signals
+     * @param features
+     * @param offset index of the first feature in features
+     */
+    public void compute(SignalBuffer signals, double[] features,
+            int offset) {
+        getFeatures(this.compute(signals), TIME_BINS, features, offset);
+    }
+
+    /**
+     * Fixed length time-frequency features of a spectrogram: the frames are
+     * split into time_bins parts of the letter and the power of every
+     * frequency bin is averaged over each part.
+     * @param spec spectrogram from compute()
+     * @param time_bins number of parts
+     * @return time_bins * getNumBins() values, part by part
+     */
+    public static double[] getFeatures(double[][] spec, int time_bins) {
+        double[] features = new double[time_bins * spec[0].length];
+        getFeatures(spec, time_bins, features, 0);
+        return features;
+    }
+
+    /**
+     * Same as getFeatures(spec, time_bins), into features[offset..).
+     */
+    public static void getFeatures(double[][] spec, int time_bins,
+            double[] features, int offset) {
+        int frames = spec.length;
+        int bins = spec[0].length;
+        Arrays.fill(features, offset, offset + time_bins * bins, 0);
+        for (int t = 0; t < time_bins; t++) {
+            int from = t * frames / time_bins;
+            int to = Math.max((t + 1) * frames / time_bins, from + 1);
+            to = Math.min(to, frames);
+            from = Math.min(from, to - 1);
+            for (int f = from; f < to; f++) {
+                for (int k = 0; k < bins; k++) {
+                    features[offset + t * bins + k] +=
+                            spec[f][k] / (to - from);
+                }
+            }
+        }
+    }
+
+    /**
+     * Grayscale image of a spectrogram: time from left to right, frequency
+     * from bottom to top, brighter for more power (in dB, scaled between
+     * the smallest and the largest value of the spectrogram).
+     * @param spec spectrogram from compute()
+     * @return the image
+     */
+    public static BufferedImage render(double[][] spec) {
+        int frames = spec.length;
+        int bins = spec[0].length;
+        double[][] db = new double[frames][bins];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int f = 0; f < frames; f++) {
+            for (int k = 0; k < bins; k++) {
+                db[f][k] = 10 * Math.log10(spec[f][k] + 1e-12);
+                min = Math.min(min, db[f][k]);
+                max = Math.max(max, db[f][k]);
+            }
+        }
+        double range = max > min ? max - min : 1;
+        BufferedImage image = new BufferedImage(frames * IMAGE_SCALE,
+                bins * IMAGE_SCALE, BufferedImage.TYPE_BYTE_GRAY);
+        // the gray levels go straight into the raster: setRGB() would
+        // convert them from sRGB and darken them
+        WritableRaster raster = image.getRaster();
+        for (int f = 0; f < frames; f++) {
+            for (int k = 0; k < bins; k++) {
+                int gray = (int) Math.round(255 * (db[f][k] - min) / range);
+                int y = (bins - 1 - k) * IMAGE_SCALE;
+                for (int dx = 0; dx < IMAGE_SCALE; dx++) {
+                    for (int dy = 0; dy < IMAGE_SCALE; dy++) {
+                        raster.setSample(f * IMAGE_SCALE + dx, y + dy, 0,
+                                gray);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    private static String inputDir = null;
+    private static int window_size = DEFAULT_WINDOW;
+    private static int hop_size = DEFAULT_HOP;
+    private static boolean want_images = false;
+    private static int threads = 1;
+
+    private static void parseCommandLineArgs(String[] args) {
+        ArrayList<String> cmd_args = new ArrayList<String>(Arrays.asList(args));
+        int index = cmd_args.indexOf("-d");
+        if (cmd_args.contains("-h") || index == -1 ||
+                index + 1 >= cmd_args.size()) {
+            System.out.println("Usage: java Spectrogram -d <dir-name>");
+            System.out.println("Example: java Spectrogram -d all-letters");
+            System.out.println("Arguments:\n");
+            System.out.println("\t-d <dir-name>\tthe directory (in ../data/) " +
+                    "which you want to process");
+            System.out.println("\t-window <n>\treadings per frame (defaults " +
+                    "to " + DEFAULT_WINDOW + ")");
+            System.out.println("\t-hop <n>\treadings between frames " +
+                    "(defaults to " + DEFAULT_HOP + ")");
+            System.out.println("\t-images\t\twrites the spectrograms to " +
+                    "../../data/spectograms/");
+            System.out.println("\t-parallel [n]\tprocesses the files on n " +
+                    "threads\n\t\t\t(defaults to the number of processors)");
+            System.exit(0);
+        }
+        inputDir = cmd_args.get(index + 1);
+        if (cmd_args.contains("-window")) {
+            window_size = Integer.parseInt(
+                    cmd_args.get(cmd_args.indexOf("-window") + 1));
+        }
+        if (cmd_args.contains("-hop")) {
+            hop_size = Integer.parseInt(
+                    cmd_args.get(cmd_args.indexOf("-hop") + 1));
+        }
+        want_images = cmd_args.contains("-images");
+        if (cmd_args.contains("-parallel")) {
+            index = cmd_args.indexOf("-parallel");
+            threads = Runtime.getRuntime().availableProcessors();
+            if (index + 1 < cmd_args.size()
+                    && cmd_args.get(index + 1).matches("[0-9]+")) {
+                threads = Integer.parseInt(cmd_args.get(index + 1));
+            }
+            System.out.println("using " + threads + " threads");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        parseCommandLineArgs(args);
+        TreeMap<String, File> recordings = new TreeMap<String, File>();
+        FeaturePipeline.findRecordings(new File("../../data/" + inputDir), "",
+                recordings);
+        System.out.println(recordings.size() + " recordings found");
+
+        // every thread has its own plan and buffers
+        final ThreadLocal<Spectrogram> spectrograms =
+                new ThreadLocal<Spectrogram>() {
+            @Override
+            protected Spectrogram initialValue() {
+                return new Spectrogram(window_size, hop_size);
+            }
+        };
+        final FeatureExtractor extractor = new FeatureExtractor();
+        ArrayList<Callable<String>> tasks = new ArrayList<Callable<String>>();
+        for (Map.Entry<String, File> entry : recordings.entrySet()) {
+            final String key = entry.getKey();
+            final File file = entry.getValue();
+            tasks.add(new Callable<String>() {
+                public String call() throws IOException {
+                    return process(spectrograms.get(), extractor, key, file);
+                }
+            });
+        }
+
+        ArrayList<String> rows = new ArrayList<String>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+        try {
+            List<Future<String>> results = pool.invokeAll(tasks);
+            for (Future<String> result : results) {
+                rows.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        String datafile = "../../data/features/" + inputDir + "-stft.csv";
+        PrintWriter pw = new PrintWriter(
+                new BufferedWriter(new FileWriter(datafile)));
+        StringBuilder heading = new StringBuilder("file, ");
+        for (String name : new Spectrogram(window_size, hop_size)
+                .getFeatureNames()) {
+            heading.append(name).append(", ");
+        }
+        pw.println(heading.append("label"));
+        for (String row : rows) {
+            pw.println(row);
+        }
+        pw.close();
+        System.out.println("writing " + datafile);
+    }
+
+    /**
+     * Spectrogram, features and (optionally) image of one letter.
+     * @param key path of the recording relative to the input directory
+     * @return the key and the labeled features, as a line of the csv file
+     */
+    private static String process(Spectrogram spectrogram,
+            FeatureExtractor extractor, String key, File file)
+            throws IOException {
+        SignalBuffer signals = extractor.readCSV(file);
+        double[][] spec = spectrogram.compute(signals);
+        String letter = file.getParentFile().getName();
+        if (want_images) {
+            File dir = new File("../../data/spectograms/" + letter);
+            dir.mkdirs();
+            String name = file.getName();
+            name = name.substring(0, name.length() - 4);
+            ImageIO.write(render(spec), "png", new File(dir, name + ".png"));
+        }
+        StringBuilder sb = new StringBuilder(key).append(',');
+        for (double value : getFeatures(spec, TIME_BINS)) {
+            sb.append(value).append(',');
+        }
+        sb.append(extractor.getLabel(letter));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,446 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.StringTokenizer;
+
+
+/**
+ * Detects and featurizes key presses while the accelerometer readings are
+ * coming in, instead of after the whole recording has been written.
+ *
+ * The readings go into a ring buffer of fixed capacity, so the memory used
+ * does not grow with the length of the recording. A reading whose absolute
+ * g-force (relative to the running mean of the g-force) reaches
+ * G_FORCE_THRESH becomes the pending peak, unless it is inside the window
+ * of the last key press. A larger reading within AFTER_THRESH of the
+ * pending peak replaces it. Once a reading arrives more than AFTER_THRESH
+ * after the pending peak, the window around the peak is cut out of the
+ * ring buffer the same way WordFeatureExtractor does it, its Features are
+ * computed and it is handed to the Listener.
+ *
+ * Unlike the batch segmentation, a peak is final once its AFTER_THRESH
+ * horizon has passed, so a larger peak arriving later can not take its
+ * readings away.
+ *
+ * Usage: java StreamingKeystrokeDetector [-replay] [-filter spec]
+ * [-bins n|f1,f2,...] [file]
+ * reads timestamp,x,y,z lines from the file, or from the standard input
+ * when no file is given (e.g. a pipe from the recording device). With
+ * -replay the readings are fed at the pace of their timestamps; -filter
+ * filters the g-force values as they come in (see FilterChain); -bins adds
+ * the power at n evenly spaced frequencies, or at the given frequencies in
+ * cycles per sample, to the features (see GoertzelBins).
+ */
+public class StreamingKeystrokeDetector {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long FACTOR = 1000;
+    // the label of a key press is not known while streaming, so neither
+    // the header nor the rows have a label column
+    private static final boolean WANT_LABELS = false;
+
+    /**
+     * Receives the key presses as they are detected.
+     */
+    public interface Listener {
+        void keystroke(Keystroke keystroke);
+    }
+
+    /**
+     * A detected key press.
+     */
+    public static class Keystroke {
+        private SignalBuffer signals;
+        private Features features;
+        private long peakTimeStamp;
+        private long latency;
+        private long processingTime;
+
+        /**
+         * @return readings of the key press, relative to its first reading
+         */
+        public SignalBuffer getSignals() {
+            return signals;
+        }
+
+        public Features getFeatures() {
+            return features;
+        }
+
+        /**
+         * @return time of the peak in the recording, in micro-seconds
+         */
+        public long getPeakTimeStamp() {
+            return peakTimeStamp;
+        }
+
+        /**
+         * @return nano-seconds from the arrival of the peak reading to the
+         * key press being emitted
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return nano-seconds spent cutting the window and computing the
+         * features
+         */
+        public long getProcessingTime() {
+            return processingTime;
+        }
+    }
+
+    private long before_thresh;
+    private long after_thresh;
+    private double gforce_thresh;
+    private Listener listener;
+    private SignalFilter filter = null;
+    private GoertzelBins bins = null;
+    private int bins_slot = -1;
+    private FeatureExtractor extractor = new FeatureExtractor();
+
+    // ring buffer; reading number seq is stored at seq % capacity
+    private int capacity;
+    private long[] timestamps;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private double[] gforce;
+    private long[] arrival;
+    private long count = 0;
+    private double gforce_sum = 0;
+    private long start_time = 0;
+
+    private long pending = -1;
+    private double pending_force = 0;
+    private long claimed_until = Long.MIN_VALUE;
+
+    // latency metrics
+    private long keystrokes = 0;
+    private long total_latency = 0;
+    private long max_latency = 0;
+    private long total_processing = 0;
+
+    public StreamingKeystrokeDetector(Listener listener) {
+        this(WordFeatureExtractor.BEFORE_THRESH,
+                WordFeatureExtractor.AFTER_THRESH,
+                WordFeatureExtractor.G_FORCE_THRESH, DEFAULT_CAPACITY,
+                listener);
+    }
+
+    /**
+     * @param before_thresh micro-seconds kept before a peak
+     * @param after_thresh micro-seconds kept after a peak
+     * @param gforce_thresh smallest absolute g-force of a peak
+     * @param capacity number of readings kept in the ring buffer; it must
+     * hold at least before_thresh + after_thresh of readings, or add() and
+     * flush() throw when a key press has left the buffer before it is emitted
+     * @param listener receives the key presses
+     */
+    public StreamingKeystrokeDetector(long before_thresh, long after_thresh,
+            double gforce_thresh, int capacity, Listener listener) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException(
+                    "ring buffer capacity must be at least 2: " + capacity);
+        }
+        this.before_thresh = before_thresh;
+        this.after_thresh = after_thresh;
+        this.gforce_thresh = gforce_thresh;
+        this.listener = listener;
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.gforce = new double[capacity];
+        this.arrival = new long[capacity];
+    }
+
+    /**
+     * Filters the g-force of every reading as it is added.
+     * @param filter
+     */
+    public void setFilter(SignalFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Adds the power of the key presses at the frequencies of the bins to
+     * their features (as the fft features).
+     * @param bins
+     */
+    public void setBins(GoertzelBins bins) {
+        this.bins = bins;
+        FeatureSchema schema = new FeatureSchema();
+        if (bins != null) {
+            this.bins_slot = schema.addAll("fft", bins.getNumBins());
+        }
+        this.extractor.setSchema(schema);
+    }
+
+    /**
+     * @return the columns of the features of the key presses
+     */
+    public FeatureSchema getSchema() {
+        return this.extractor.getSchema();
+    }
+
+    /**
+     * Adds the next reading of the recording.
+     * @param timestamp in nano-seconds, as recorded
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void add(long timestamp, double x, double y, double z) {
+        if (this.count == 0) {
+            this.start_time = timestamp;
+        }
+        // convert time passed to micro-second
+        long time = (timestamp - this.start_time) / FACTOR;
+        long seq = this.count++;
+        int slot = this.slot(seq);
+        this.timestamps[slot] = time;
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.z[slot] = z;
+        this.gforce[slot] = Math.sqrt(x*x + y*y + z*z) - Signal.G;
+        if (this.filter != null) {
+            this.gforce[slot] = this.filter.filter(this.gforce[slot]);
+        }
+        this.arrival[slot] = System.nanoTime();
+        this.gforce_sum += this.gforce[slot];
+
+        if (this.pending >= 0 &&
+                time - this.timestamps[this.slot(this.pending)]
+                > this.after_thresh) {
+            // this is the first reading after the window of the pending peak
+            this.emit(this.pending, seq);
+            this.pending = -1;
+        }
+
+        double base = this.gforce_sum / this.count;
+        double force = Math.abs(this.gforce[slot] - base);
+        if (force >= this.gforce_thresh && time > this.claimed_until) {
+            if (this.pending < 0 || force > this.pending_force) {
+                this.pending = seq;
+                this.pending_force = force;
+            }
+        }
+    }
+
+    /**
+     * Emits the pending key press, if any, without waiting for the rest of
+     * its window. Call it at the end of the recording.
+     */
+    public void flush() {
+        if (this.pending >= 0) {
+            this.emit(this.pending, this.count - 1);
+            this.pending = -1;
+        }
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % this.capacity);
+    }
+
+    private void emit(long peak, long end) {
+        long begin = System.nanoTime();
+        // last reading more than before_thresh before the peak, or the
+        // first reading of the recording
+        long oldest = Math.max(0, this.count - this.capacity);
+        if (peak < oldest) {
+            // its slot holds a later reading now
+            throw new IllegalStateException("the key press at reading " +
+                    peak + " is no longer in the ring buffer of " +
+                    this.capacity + " readings; use a larger capacity");
+        }
+        long peak_time = this.timestamps[this.slot(peak)];
+        if (oldest > 0 && peak_time - this.timestamps[this.slot(oldest)]
+                <= this.before_thresh) {
+            // the readings before the oldest one belong to the window too
+            throw new IllegalStateException("the window of the key press at " +
+                    "reading " + peak + " starts before the ring buffer of " +
+                    this.capacity + " readings; use a larger capacity");
+        }
+
+        long low = oldest;
+        long high = peak;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (peak_time - this.timestamps[this.slot(mid)]
+                    > this.before_thresh) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        long start = Math.max(low - 1, 0);
+
+        SignalBuffer letter = new SignalBuffer((int) (end - start + 1));
+        long origin = this.timestamps[this.slot(start)];
+        for (long seq = start; seq <= end; seq++) {
+            int slot = this.slot(seq);
+            letter.add(this.timestamps[slot] - origin, this.x[slot],
+                    this.y[slot], this.z[slot]);
+            // keep the filtered g-force
+            letter.setGForce(letter.size() - 1, this.gforce[slot]);
+        }
+        this.claimed_until = this.timestamps[this.slot(end)];
+
+        Keystroke keystroke = new Keystroke();
+        keystroke.signals = letter;
+        keystroke.features = this.extractor.getFeatures(letter);
+        if (this.bins != null) {
+            this.bins.compute(letter, keystroke.features.getValues(),
+                    this.bins_slot);
+        }
+        keystroke.peakTimeStamp = peak_time;
+        long now = System.nanoTime();
+        keystroke.latency = now - this.arrival[this.slot(peak)];
+        keystroke.processingTime = now - begin;
+
+        this.keystrokes++;
+        this.total_latency += keystroke.latency;
+        this.max_latency = Math.max(this.max_latency, keystroke.latency);
+        this.total_processing += keystroke.processingTime;
+        this.listener.keystroke(keystroke);
+    }
+
+    public long getKeystrokeCount() {
+        return this.keystrokes;
+    }
+
+    /**
+     * @return mean latency of the key presses, in nano-seconds
+     */
+    public double getMeanLatency() {
+        return this.keystrokes == 0 ? 0 :
+            (double) this.total_latency / this.keystrokes;
+    }
+
+    /**
+     * @return largest latency of a key press, in nano-seconds
+     */
+    public long getMaxLatency() {
+        return this.max_latency;
+    }
+
+    /**
+     * @return mean processing time of the key presses, in nano-seconds
+     */
+    public double getMeanProcessingTime() {
+        return this.keystrokes == 0 ? 0 :
+            (double) this.total_processing / this.keystrokes;
+    }
+
+    /**
+     * @param spec number of evenly spaced bins, or their frequencies
+     * separated by commas
+     */
+    private static GoertzelBins parseBins(String spec) {
+        if (spec.matches("[0-9]+")) {
+            return new GoertzelBins(Integer.parseInt(spec));
+        }
+        String[] values = spec.split(",");
+        double[] frequencies = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            frequencies[i] = Double.parseDouble(values[i]);
+        }
+        return new GoertzelBins(frequencies);
+    }
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        boolean replay = false;
+        String filename = null;
+        String filter_spec = null;
+        GoertzelBins bins = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-replay")) {
+                replay = true;
+            } else if (arg.equals("-filter") && i + 1 < args.length) {
+                filter_spec = args[++i];
+            } else if (arg.equals("-bins") && i + 1 < args.length) {
+                bins = parseBins(args[++i]);
+            } else if (arg.equals("-h")) {
+                System.out.println("Usage: java StreamingKeystrokeDetector " +
+                        "[-replay] [-filter spec] [-bins n|f1,f2,...] [file]");
+                System.out.println("Reads timestamp,x,y,z lines from the " +
+                        "file or the standard input");
+                System.exit(0);
+            } else if (!arg.equals("-")) {
+                filename = arg;
+            }
+        }
+        BufferedReader br = filename == null ?
+                new BufferedReader(new InputStreamReader(System.in)) :
+                new BufferedReader(new FileReader(filename));
+
+        final FeatureWriter writer = new FeatureWriter(System.out);
+        StreamingKeystrokeDetector detector = new StreamingKeystrokeDetector(
+                new Listener() {
+            public void keystroke(Keystroke keystroke) {
+                try {
+                    writer.write(keystroke.getFeatures(), WANT_LABELS);
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                System.err.println(String.format(
+                        "key press at %.3fs: %d readings, " +
+                        "latency %.3fms, processing %.1fus",
+                        keystroke.getPeakTimeStamp() / 1e6,
+                        keystroke.getSignals().size(),
+                        keystroke.getLatency() / 1e6,
+                        keystroke.getProcessingTime() / 1e3));
+            }
+        });
+
+        if (filter_spec != null) {
+            detector.setFilter(FilterChain.parse(filter_spec));
+        }
+        detector.setBins(bins);
+        // null is the single "label" column, as in the rows with labels
+        writer.writeHeader(detector.getSchema(),
+                WANT_LABELS ? null : new String[0]);
+        writer.flush();
+
+        String line;
+        long first_time = 0;
+        long replay_start = System.nanoTime();
+        boolean first = true;
+        while ((line = br.readLine()) != null) {
+            if (line.trim().length() == 0) {
+                continue;
+            }
+            StringTokenizer data = new StringTokenizer(line, ",");
+            long time = Long.parseLong(data.nextToken().trim());
+            double x = Double.parseDouble(data.nextToken());
+            double y = Double.parseDouble(data.nextToken());
+            double z = Double.parseDouble(data.nextToken());
+            if (first) {
+                first = false;
+                first_time = time;
+            }
+            if (replay) {
+                long wait = (time - first_time)
+                        - (System.nanoTime() - replay_start);
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                }
+            }
+            detector.add(time, x, y, z);
+        }
+        detector.flush();
+        br.close();
+        System.err.println(String.format("%d key presses, mean latency " +
+                "%.3fms, max latency %.3fms, mean processing %.1fus",
+                detector.getKeystrokeCount(), detector.getMeanLatency() / 1e6,
+                detector.getMaxLatency() / 1e6,
+                detector.getMeanProcessingTime() / 1e3));
+    }
+}
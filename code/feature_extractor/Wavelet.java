@@ -0,0 +1,192 @@
+import java.util.Arrays;
+
+
+/**
+ * Multi-level discrete wavelet transform of the g-force of a letter, and
+ * the energy features of its levels: a cheap time-frequency description
+ * (O(n)) next to the AR spectrum.
+ *
+ * The transform is orthonormal and done in place by lifting over a single
+ * double[]: at level j the approximation coefficients are 2^j apart and
+ * the details of the level sit halfway between them, so nothing is copied
+ * between levels. HAAR and D4 (Daubechies 4, periodic at the ends) are
+ * supported. A level with an odd number of coefficients leaves its last
+ * one out.
+ *
+ * For every level j = 1..levels the features are the mean square and the
+ * largest absolute value of its details (dj_energy, dj_max), followed by
+ * the mean square of the last approximation (a<levels>_energy). The
+ * g-force is demeaned first.
+ *
+ * An instance reuses its buffer, so it should not be shared between
+ * threads.
+ */
+public class Wavelet {
+    public static final int HAAR = 0;
+    public static final int D4 = 1;
+    public static final int DEFAULT_LEVELS = 4;
+
+    private static final double SQRT2 = Math.sqrt(2);
+    private static final double SQRT3 = Math.sqrt(3);
+
+    private int type;
+    private int levels;
+    private double[] buffer = new double[256];
+
+    /**
+     * @param type HAAR or D4
+     * @param levels number of levels of the transform
+     */
+    public Wavelet(int type, int levels) {
+        if (type != HAAR && type != D4) {
+            throw new IllegalArgumentException("unknown wavelet: " + type);
+        }
+        if (levels < 1) {
+            throw new IllegalArgumentException("levels must be >= 1: " +
+                    levels);
+        }
+        this.type = type;
+        this.levels = levels;
+    }
+
+    /**
+     * @param name "haar" or "d4"
+     * @return HAAR or D4
+     */
+    public static int getType(String name) {
+        if (name.equals("haar")) {
+            return HAAR;
+        } else if (name.equals("d4")) {
+            return D4;
+        }
+        throw new IllegalArgumentException("unknown wavelet: " + name);
+    }
+
+    public int getNumFeatures() {
+        return 2 * this.levels + 1;
+    }
+
+    /**
+     * @return names of the features, in the order of compute()
+     */
+    public String[] getFeatureNames() {
+        String[] names = new String[this.getNumFeatures()];
+        for (int j = 1; j <= this.levels; j++) {
+            names[2 * j - 2] = "d" + j + "_energy";
+            names[2 * j - 1] = "d" + j + "_max";
+        }
+        names[2 * this.levels] = "a" + this.levels + "_energy";
+        return names;
+    }
+
+    /**
+     * @param signals
+     * @return the wavelet features of the g-force values
+     */
+    public double[] compute(SignalBuffer signals) {
+        double[] features = new double[this.getNumFeatures()];
+        this.compute(signals, features, 0);
+        return features;
+    }
+
+    /**
+     * Computes the wavelet features of the g-force values into
+     * features[offset..offset + getNumFeatures()), e.g. the slots of a row
+     * of features.
+     * @param signals
+     * @param features
+     * @param offset index of the first feature in features
+     */
+    public void compute(SignalBuffer signals, double[] features,
+            int offset) {
+        int n = signals.size();
+        if (this.buffer.length < n) {
+            this.buffer = new double[Math.max(n, 2 * this.buffer.length)];
+        }
+        double mean = n == 0 ? 0 : FeatureExtractor.meanGForce(signals);
+        for (int i = 0; i < n; i++) {
+            this.buffer[i] = signals.getGForce(i) - mean;
+        }
+
+        Arrays.fill(features, offset,
+                offset + this.getNumFeatures(), 0);
+        int count = n;
+        int stride = 1;
+        for (int j = 1; j <= this.levels; j++) {
+            int pairs = count / 2;
+            if (pairs < 1 || (this.type == D4 && pairs < 2)) {
+                // too short for this level; its features stay 0
+                count = 0;
+                break;
+            }
+            if (this.type == HAAR) {
+                this.haar(pairs, stride);
+            } else {
+                this.d4(pairs, stride);
+            }
+            double energy = 0;
+            double max = 0;
+            for (int k = 0; k < pairs; k++) {
+                double d = this.buffer[2 * stride * k + stride];
+                energy += d * d;
+                max = Math.max(max, Math.abs(d));
+            }
+            features[offset + 2 * j - 2] = energy / pairs;
+            features[offset + 2 * j - 1] = max;
+            count = pairs;
+            stride *= 2;
+        }
+        if (count > 0) {
+            double energy = 0;
+            for (int k = 0; k < count; k++) {
+                double a = this.buffer[stride * k];
+                energy += a * a;
+            }
+            features[offset + 2 * this.levels] = energy / count;
+        }
+    }
+
+    /**
+     * One level of the Haar transform by lifting.
+     * @param pairs number of (even, odd) pairs
+     * @param stride distance between the coefficients of the level
+     */
+    private void haar(int pairs, int stride) {
+        double[] x = this.buffer;
+        for (int k = 0; k < pairs; k++) {
+            int even = 2 * stride * k;
+            int odd = even + stride;
+            x[odd] -= x[even];
+            x[even] += x[odd] / 2;
+            x[even] *= SQRT2;
+            x[odd] /= SQRT2;
+        }
+    }
+
+    /**
+     * One level of the Daubechies 4 transform by lifting, with periodic
+     * ends.
+     * @param pairs number of (even, odd) pairs, at least 2
+     * @param stride distance between the coefficients of the level
+     */
+    private void d4(int pairs, int stride) {
+        double[] x = this.buffer;
+        int step = 2 * stride;
+        for (int k = 0; k < pairs; k++) {
+            x[step * k] += SQRT3 * x[step * k + stride];
+        }
+        for (int k = 0; k < pairs; k++) {
+            int prev = k == 0 ? pairs - 1 : k - 1;
+            x[step * k + stride] -= SQRT3 / 4 * x[step * k] +
+                    (SQRT3 - 2) / 4 * x[step * prev];
+        }
+        for (int k = 0; k < pairs; k++) {
+            int next = k == pairs - 1 ? 0 : k + 1;
+            x[step * k] -= x[step * next + stride];
+        }
+        for (int k = 0; k < pairs; k++) {
+            x[step * k] *= (SQRT3 - 1) / SQRT2;
+            x[step * k + stride] *= (SQRT3 + 1) / SQRT2;
+        }
+    }
+}
@@ -3,39 +3,56 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 
 
 public class WordFeatureExtractor {
 
     public static final double G = 9.81;
-    public static final BigInteger FACTOR = new BigInteger("1000");
-    public static BigInteger BEFORE_THRESH = new BigInteger("250000"); // 250ms
-    public static BigInteger AFTER_THRESH = new BigInteger("1000000"); // 1000ms
+    public static final long FACTOR = 1000;
+    public static long BEFORE_THRESH = 250000; // 250ms
+    public static long AFTER_THRESH = 1000000; // 1000ms
     public static double G_FORCE_THRESH = 0.15;
     public static boolean TIME_X_Y_Z_ONLY = false;
+    public static boolean WANT_CLIP_ENDS = false;
+    public static boolean WANT_SMOOTHING = false;
     
     private HashMap<String, ArrayList<Features>> featuresMap;
+    private KeystrokeSegmenter segmenter = new KeystrokeSegmenter(
+            BEFORE_THRESH, AFTER_THRESH, G_FORCE_THRESH);
+    private EndsClipper clipper = null;
     private File gForceFile;
     private String indivLettersFile;
     
     public static void main(String[] args) throws IOException {
         if (args.length < 1) {
             System.out.println("Usage: java WordFeatureExtractor " +
-                    "<data-folder> <<timexyz>>");
+                    "<data-folder> <<timexyz>> <<-clip>> <<-smooth>>");
             System.out.println("Example: java WordFeatureExtractor akshay");
+            System.out.println("-clip drops 150ms at both ends of every " +
+                    "file, as preprocessor/ends_clipper.py");
+            System.out.println("-smooth also smoothes the g-force of the " +
+                    "clipped files");
             System.exit(0);
         }
-        if (args.length == 2) {
-            if (args[1].equals("timexyz")) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("timexyz")) {
                 TIME_X_Y_Z_ONLY = true;
+            } else if (args[i].equals("-clip")) {
+                WANT_CLIP_ENDS = true;
+            } else if (args[i].equals("-smooth")) {
+                WANT_CLIP_ENDS = true;
+                WANT_SMOOTHING = true;
             }
         }
         WordFeatureExtractor ob = new WordFeatureExtractor();
+        if (WANT_CLIP_ENDS) {
+            ob.clipper = new EndsClipper();
+            if (WANT_SMOOTHING) {
+                ob.clipper.setFilters(FilterChain.parse(EndsClipper.SMOOTHING));
+            }
+        }
         
         String path = "../../data/" + args[0];
         ob.indivLettersFile = "../../data/" + args[0] + ".indivletters";
@@ -61,19 +78,14 @@ public class WordFeatureExtractor {
         }
         for (String name : featuresMap.keySet()) {
             String filepath = dir_name + "/" + name + ".csv";
-            PrintWriter pw = new PrintWriter(
-                    new BufferedWriter(new FileWriter(filepath)));
-            String heading = Features.getFeaturesName();
-            // remove the ", label" from the features heading
-            heading = heading.substring(0, heading.lastIndexOf(','));
-            pw.println(heading);
+            FeatureWriter writer = new FeatureWriter(new File(filepath));
+            // the letters of a word are not labeled
+            writer.writeHeader(FeatureSchema.DEFAULT, new String[0]);
             
             for (Features feature : featuresMap.get(name)) {
-                String fstr = feature.toString();
-                fstr = fstr.substring(0, fstr.lastIndexOf(','));
-                pw.println(fstr);
+                writer.write(feature, false);
             }
-            pw.close();
+            writer.close();
             //System.out.println("writing " + filepath);
         }
     }
@@ -87,7 +99,7 @@ public class WordFeatureExtractor {
      * @throws IOException
      * @return ArrayList of Signals from the file
      */
-    private ArrayList<Signal> processWordCSV(File directory)
+    private ArrayList<SignalBuffer> processWordCSV(File directory)
             throws IOException {
         File[] files = directory.listFiles();
 
@@ -95,10 +107,10 @@ public class WordFeatureExtractor {
         for (File file: files) {
             String filepath = file.getAbsolutePath();
             if (filepath.endsWith(".csv")) {
-                ArrayList<Signal> signals = fe.readCSV(file);
-                ArrayList<ArrayList<Signal>> letter_signals =
+                SignalBuffer signals = this.clipper != null ?
+                        this.clipper.read(file) : fe.readCSV(file);
+                ArrayList<SignalBuffer> letter_signals =
                         this.breakSignal(signals);
-                this.orderLetterSignals(letter_signals);
                 letter_signals = this.shiftRelativeToOrigin(letter_signals);
                 System.out.println(file.getName() +
                         ": # letters = " + letter_signals.size());
@@ -115,7 +127,7 @@ public class WordFeatureExtractor {
         return null;
     }
 
-    private void writeTimeXYZ(ArrayList<ArrayList<Signal>> letter_signals,
+    private void writeTimeXYZ(ArrayList<SignalBuffer> letter_signals,
             File csv_file) throws IOException {
         File indiv = new File(this.indivLettersFile);
         if (!indiv.exists()) {
@@ -130,20 +142,18 @@ public class WordFeatureExtractor {
         String filepath = file.getAbsolutePath() + "/";
         for (int i = 0; i < letter_signals.size(); i++) {
             String path = filepath + i + ".letter.csv";
-            ArrayList<Signal> signals = letter_signals.get(i);
+            SignalBuffer signals = letter_signals.get(i);
             PrintWriter pw = new PrintWriter(
                     new BufferedWriter(new FileWriter(path)));
-            for (Signal signal : signals) {
-                String time = "";
+            for (int j = 0; j < signals.size(); j++) {
+                long time = signals.getTimeStamp(j);
                 if (TIME_X_Y_Z_ONLY) {
-                    time = signal.getTimeStamp().multiply(FACTOR).toString();
-                } else {
-                    time = signal.getTimeStamp().toString();
+                    time = time * FACTOR;
                 }
                 String data = time + "," +
-                              String.valueOf(signal.getX()) + "," +
-                              String.valueOf(signal.getY()) + "," +
-                              String.valueOf(signal.getZ());
+                              String.valueOf(signals.getX(j)) + "," +
+                              String.valueOf(signals.getY(j)) + "," +
+                              String.valueOf(signals.getZ(j));
                 pw.println(data);
             }
             pw.close();
@@ -151,31 +161,22 @@ public class WordFeatureExtractor {
         }
     }
 
-    private ArrayList<ArrayList<Signal>> shiftRelativeToOrigin(
-            ArrayList<ArrayList<Signal>> letter_signals) {
-        ArrayList<ArrayList<Signal>> new_letter_signals =
-                new ArrayList<ArrayList<Signal>>();
-        for(ArrayList<Signal> signals : letter_signals) {
-            BigInteger start_time = signals.get(0).getTimeStamp();
-            ArrayList<Signal> new_signals = new ArrayList<Signal>();
-            for(Signal signal : signals) {
-                BigInteger new_timestamp =
-                        signal.getTimeStamp().subtract(start_time);
-                Signal new_signal = new Signal(new_timestamp,
-                        signal.getX(), signal.getY(), signal.getZ());
-                new_signals.add(new_signal);
-            }
-            new_letter_signals.add(new_signals);
+    private ArrayList<SignalBuffer> shiftRelativeToOrigin(
+            ArrayList<SignalBuffer> letter_signals) {
+        ArrayList<SignalBuffer> new_letter_signals =
+                new ArrayList<SignalBuffer>();
+        for(SignalBuffer signals : letter_signals) {
+            new_letter_signals.add(signals.shiftRelativeToOrigin());
         }
         return new_letter_signals;
     }
 
     private void addFeatures(File file,
-            ArrayList<ArrayList<Signal>> letter_signals) {
+            ArrayList<SignalBuffer> letter_signals) {
         ArrayList<Features> features = new ArrayList<Features>();
         FeatureExtractor fe = new FeatureExtractor();
         
-        for(ArrayList<Signal> signals : letter_signals) {
+        for(SignalBuffer signals : letter_signals) {
             Features feat = fe.getFeatures(signals);
             features.add(feat);
         }
@@ -184,7 +185,7 @@ public class WordFeatureExtractor {
     }
 
     private void writeWordLettersGForce(
-            ArrayList<ArrayList<Signal>> letter_signals, File csv_file)
+            ArrayList<SignalBuffer> letter_signals, File csv_file)
                     throws IOException {
         String output_dir = this.gForceFile.getAbsolutePath() + "/" +
                     csv_file.getName().split("\\.")[0];
@@ -202,80 +203,15 @@ public class WordFeatureExtractor {
     }
 
     /**
-     * Orders the letter signals according as they appear in the word typed
-     * @param letter_signals
+     * Breaks the word signal into the signals of its letters, in the order
+     * in which they were typed
+     * @param signals
+     * @return
      */
-    private void orderLetterSignals(
-            ArrayList<ArrayList<Signal>> letter_signals) {
-        Collections.sort(letter_signals, new Comparator<ArrayList<Signal>>(){
-            public int compare(ArrayList<Signal> letter1,
-                    ArrayList<Signal> letter2) {
-                BigInteger diff = letter1.get(0).getTimeStamp().subtract(
-                        letter2.get(0).getTimeStamp());
-                return diff.compareTo(BigInteger.ZERO);
-            }
-        });
-    }
-
-    private ArrayList<ArrayList<Signal>> breakSignal(ArrayList<Signal> signals){
-        FeatureExtractor.moveToBaseReference(signals);
-
-        @SuppressWarnings("unchecked")
-        ArrayList<Signal> sorted_signals = (ArrayList<Signal>) signals.clone();
-        // reverse sorted according to the absolute values of the g-force values
-        Collections.sort(sorted_signals, new Comparator<Signal>() {
-            public int compare(Signal signal1, Signal signal2) {
-                double diff = Math.abs(signal1.getGForce()) -
-                        Math.abs(signal2.getGForce());
-                return -(int)Math.signum(diff);
-            }
-        });
-        ArrayList<ArrayList<Signal>> letter_signals =
-                new ArrayList<ArrayList<Signal>>();
-        while (sorted_signals.size() > 0) {
-            if (Math.abs(sorted_signals.get(0).getGForce()) < G_FORCE_THRESH) {
-                break;
-            }
-            int max_index = signals.indexOf(sorted_signals.get(0));
-            ArrayList<Signal> letter =
-                    this.removeAroundMax(signals, max_index);
-            letter_signals.add(letter);
-            sorted_signals.removeAll(letter);
-        }
-        return letter_signals;
-    }
-
-    private ArrayList<Signal> removeAroundMax(ArrayList<Signal> signals,
-            int max_index){
-        BigInteger peak_time_stamp = signals.get(max_index).getTimeStamp();
-        
-        // letter start index
-        int start_cut_off_index = 0;
-        for (int i = max_index; i >= 0; i--) {
-            BigInteger diff = signals.get(i).getTimeStamp().subtract(
-                    peak_time_stamp).abs();
-            start_cut_off_index = i;
-            if (diff.compareTo(BEFORE_THRESH) > 0) {
-                break;
-            }
-        }
-        
-        // letter end index
-        int end_cut_off_index = 0;
-        for (int i = max_index; i < signals.size(); i++) {
-            BigInteger diff = signals.get(i).getTimeStamp().subtract(
-                    peak_time_stamp).abs(); 
-            end_cut_off_index = i;
-            if (diff.compareTo(AFTER_THRESH) > 0) {
-                break;
-            }
-        }
-        
-        ArrayList<Signal> letter_signal = new ArrayList<Signal>();
-        for (int i = start_cut_off_index; i <= end_cut_off_index; i++) {
-            letter_signal.add(signals.get(i));
-        }
-
-        return letter_signal;
+    private ArrayList<SignalBuffer> breakSignal(SignalBuffer signals){
+        // the peaks are searched relative to the base reference, but the
+        // letters keep the raw g-force values of the recording
+        double base = FeatureExtractor.meanGForce(signals);
+        return this.segmenter.segment(signals, base);
     }
 }
@@ -0,0 +1,92 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * GForceKernels on the SIMD registers of the machine, with the Vector API
+ * (jdk.incubator.vector). The tail of a column that does not fill a whole
+ * vector goes through the scalar loops.
+ *
+ * This file is kept out of the feature_extractor directory so that
+ * "javac *.java" works without the incubator module; see GForceKernels for
+ * how to build and enable it.
+ */
+public class VectorGForceKernels extends GForceKernels {
+    private static final VectorSpecies<Double> SPECIES =
+            DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    public void magnitude(double[] x, double[] y, double[] z, double g,
+            double[] out, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, i);
+            DoubleVector vz = DoubleVector.fromArray(SPECIES, z, i);
+            // same order of operations as the scalar version
+            vx.mul(vx).add(vy.mul(vy)).add(vz.mul(vz)).sqrt().sub(g)
+              .intoArray(out, i);
+        }
+        super.magnitude(x, y, z, g, out, i, to);
+    }
+
+    @Override
+    public double sum(double[] values, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, values, i));
+        }
+        return acc.reduceLanes(VectorOperators.ADD) +
+                super.sum(values, i, to);
+    }
+
+    @Override
+    public void subtract(double[] values, int from, int to, double value) {
+        int bound = from + SPECIES.loopBound(to - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, values, i).sub(value)
+                        .intoArray(values, i);
+        }
+        super.subtract(values, i, to, value);
+    }
+
+    @Override
+    public void centralSums(double[] values, int from, int to, double mean,
+            double[] sums) {
+        int bound = from + SPECIES.loopBound(to - from);
+        DoubleVector m2 = DoubleVector.zero(SPECIES);
+        DoubleVector m3 = DoubleVector.zero(SPECIES);
+        DoubleVector m4 = DoubleVector.zero(SPECIES);
+        DoubleVector min = DoubleVector.broadcast(SPECIES,
+                Double.POSITIVE_INFINITY);
+        DoubleVector max = DoubleVector.broadcast(SPECIES,
+                Double.NEGATIVE_INFINITY);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            DoubleVector d = v.sub(mean);
+            DoubleVector d2 = d.mul(d);
+            m2 = m2.add(d2);
+            m3 = m3.add(d2.mul(d));
+            m4 = m4.add(d2.mul(d2));
+            min = min.min(v);
+            max = max.max(v);
+        }
+        super.centralSums(values, i, to, mean, sums);
+        sums[0] += m2.reduceLanes(VectorOperators.ADD);
+        sums[1] += m3.reduceLanes(VectorOperators.ADD);
+        sums[2] += m4.reduceLanes(VectorOperators.ADD);
+        sums[3] = Math.min(sums[3], min.reduceLanes(VectorOperators.MIN));
+        sums[4] = Math.max(sums[4], max.reduceLanes(VectorOperators.MAX));
+    }
+}
@@ -0,0 +1,33 @@
+#!/bin/bash
+
+# extracts the labeled features (statistics and fft) of all the letter
+# files in one pass; replaces get-nonfft-features.sh,
+# SpectogramFeatureWriter.R and combine_features.sh
+
+if [[ $# -lt 1 ]]
+then
+    echo 'usage: ./get-labeled-features.sh <input-dir> <label-type>';
+    echo 'example1: ./get-labeled-features.sh all-letters';
+    echo 'example2: ./get-labeled-features.sh all-letters lr';
+    echo 'example3: ./get-labeled-features.sh all-letters triad';
+    echo 'example4: ./get-labeled-features.sh all-letters all';
+    exit
+fi
+
+path=../../data
+
+# copy the class files to this directory
+cp ../feature_extractor/*.java .
+javac *.java
+
+# run the feature pipeline
+if [[ $# -ge 2 ]]
+then
+    java -cp . FeaturePipeline -d $1 -label $2 -parallel
+else
+    java -cp . FeaturePipeline -d $1 -parallel
+fi
+
+# clean the class files
+rm -f *.class *.java
+echo "cleaning .class files"
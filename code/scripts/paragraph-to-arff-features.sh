@@ -12,29 +12,19 @@ fi
 
 path=../../data
 
-# create copy of all the .csv files into a new dir
 rm -rf $path/__para
 mkdir $path/__para
-mkdir $path/__para/files
-cp -r $path/$1/* $path/__para/files
-printf "copy: all *.csv copied to $path/__para\n\n"
-
-# run the start/stop ends removing-script on the dataset
-python ../preprocessor/ends_clipper.py $path/__para $path/__para/clipped
-rm -rf $path/__para/files
-mv $path/__para/clipped/* $path/__para
-rm -rf $path/__para/clipped
-printf "clipper: start/stop ends clipped\n\n"
 
 # copy the class files to this directory
 javac ../feature_extractor/*.java
 mv ../feature_extractor/*.class .
 echo "classes: files moved to this directory\n\n"
 
-# generate the individual letter files
-java -cp . WordFeatureExtractor __para timexyz
-mv $path/__para.indivletters $path/__para
-mv $path/__para.letters.gforces $path/__para
+# generate the individual letter files; -clip drops the start/stop ends
+# while reading the files (it replaces preprocessor/ends_clipper.py)
+java -cp . WordFeatureExtractor $1 timexyz -clip
+mv $path/$1.indivletters $path/__para/__para.indivletters
+mv $path/$1.letters.gforces $path/__para/__para.letters.gforces
 printf "individual: letters files generated\n\n"
 
 # label the individual letter files
@@ -106,6 +106,10 @@ public class GenParagraphArff {
         String features_file =
                 "../../data/dataset/testing.csv";
         String template_file = "../scripts/template.arff";
+        // written by GenTrainingTesting for the columns of testing.csv
+        if (new File("../../data/dataset/template.arff").exists()) {
+            template_file = "../../data/dataset/template.arff";
+        }
         String outdir_path = "../../data/paragraph_arff";
         GenParagraphArff ob = new GenParagraphArff();
         File outdir = new File(outdir_path);